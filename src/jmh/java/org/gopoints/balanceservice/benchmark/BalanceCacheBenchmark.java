@@ -0,0 +1,52 @@
+package org.gopoints.balanceservice.benchmark;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.service.BalanceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance reads through {@link BalanceCache}: a hit served from Caffeine, and a miss that loads
+ * the account from H2 and maps it to a DTO.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceCacheBenchmark {
+
+    private BalanceCache balanceCache;
+    private Cache<Long, BalanceCache.CachedBalance> balanceCaffeineCache;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp(H2ApplicationState application) {
+        balanceCache = application.bean(BalanceCache.class);
+        balanceCaffeineCache = application.bean("balanceCaffeineCache", Cache.class);
+    }
+
+    @Benchmark
+    public AccountDto hit(H2ApplicationState application) {
+        return balanceCache.get(application.randomAccount());
+    }
+
+    @Benchmark
+    public AccountDto miss(H2ApplicationState application) {
+        Long accountId = application.randomAccount();
+        balanceCaffeineCache.invalidate(accountId);
+        return balanceCache.get(accountId);
+    }
+}
@@ -0,0 +1,55 @@
+package org.gopoints.balanceservice.benchmark;
+
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.service.BalanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-request ledger operations through {@link BalanceService} against the embedded H2
+ * database: row lock, balance update, transaction row, daily rollup and outbox event, all in one
+ * transaction. Each operation picks a random account; run with {@code -t N} to add contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceServiceBenchmark {
+
+    private static final Money AMOUNT = Money.valueOf("1.00");
+
+    private BalanceService balanceService;
+
+    @Setup
+    public void setUp(H2ApplicationState application) {
+        balanceService = application.bean(BalanceService.class);
+    }
+
+    @Benchmark
+    public void deposit(H2ApplicationState application) {
+        balanceService.deposit(application.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public void withdraw(H2ApplicationState application) {
+        balanceService.withdraw(application.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public void transfer(H2ApplicationState application) {
+        Long from = application.randomAccount();
+        balanceService.transfer(from, application.randomAccountOtherThan(from), AMOUNT);
+    }
+}
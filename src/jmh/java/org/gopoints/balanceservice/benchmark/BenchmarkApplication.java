@@ -0,0 +1,59 @@
+package org.gopoints.balanceservice.benchmark;
+
+import org.gopoints.balanceservice.BalanceServiceApplication;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts the application without a web server and without talking to RabbitMQ: events stay in
+ * the outbox because the relay only polls once an hour, and the queue listeners are stopped right
+ * after startup. Runs on the {@code h2} profile unless {@code --spring.profiles.active} is given,
+ * e.g. {@code --spring.profiles.active=default} for the local PostgreSQL from application.properties.
+ */
+final class BenchmarkApplication {
+
+    private static final String[] DEFAULTS = {
+            "--balance.outbox.poll-interval=1h",
+            "--balance.listener.depth-poll-interval=1h",
+            "--balance.idempotency.sweep-interval=1h",
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN",
+            "--logging.level.org.gopoints=WARN",
+            "--logging.level.org.springframework.amqp=OFF"
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param args {@code --name=value} overrides, applied on top of the defaults above
+     */
+    static ConfigurableApplicationContext start(String... args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : DEFAULTS) {
+            options.put(optionName(arg), arg);
+        }
+        for (String arg : args) {
+            options.put(optionName(arg), arg);
+        }
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(BalanceServiceApplication.class)
+                .web(WebApplicationType.NONE);
+        if (!options.containsKey("--spring.profiles.active")) {
+            builder.profiles("h2");
+        }
+        ConfigurableApplicationContext context = builder.run(options.values().toArray(String[]::new));
+        // the single-message listener has its own autoStartup expression, so stop it explicitly
+        context.getBean(RabbitListenerEndpointRegistry.class).stop();
+        return context;
+    }
+
+    private static String optionName(String arg) {
+        int separator = arg.indexOf('=');
+        return separator < 0 ? arg : arg.substring(0, separator);
+    }
+}
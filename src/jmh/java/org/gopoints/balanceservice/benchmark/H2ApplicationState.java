@@ -0,0 +1,72 @@
+package org.gopoints.balanceservice.benchmark;
+
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * The whole application on the {@code h2} profile, started by {@link BenchmarkApplication} and
+ * shared by all benchmark threads of a trial. Accounts start with a balance large enough for
+ * every withdrawal of a run.
+ */
+@State(Scope.Benchmark)
+public class H2ApplicationState {
+
+    static final Money INITIAL_BALANCE = Money.valueOf("10000000.00");
+
+    @Param({"1000"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start();
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        accountIds = accountRepository.saveAll(IntStream.range(0, accounts)
+                        .mapToObj(i -> Account.builder().userId(i).balance(INITIAL_BALANCE).build())
+                        .toList())
+                .stream()
+                .mapToLong(Account::getId)
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public <T> T bean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    public Long randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    /**
+     * A random account other than {@code accountId}.
+     */
+    public Long randomAccountOtherThan(Long accountId) {
+        Long other;
+        do {
+            other = randomAccount();
+        } while (other.equals(accountId));
+        return other;
+    }
+}
@@ -0,0 +1,415 @@
+package org.gopoints.balanceservice.benchmark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.service.BalanceService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Closed-loop load generator for contended accounts. Boots the application through
+ * {@link BenchmarkApplication}, creates a set of accounts and lets worker threads call
+ * {@link BalanceService} back to back for a fixed time:
+ * <ul>
+ *     <li>deposits and withdrawals pick their account from a Zipf distribution;</li>
+ *     <li>transfers go from a uniformly chosen account to a Zipf-chosen one, so the hottest
+ *     accounts behave like merchants receiving most of the payments.</li>
+ * </ul>
+ * Prints throughput, latency percentiles per operation, row lock wait/hold times and retries,
+ * then checks that balances moved by exactly the successful deposits minus withdrawals, in
+ * {@code accounts}, in the {@code transactions} ledger and in the account postings, and that all
+ * postings still sum to zero. Exits with status 1 if they did not.
+ * <p>
+ * Options are {@code --load.*} arguments; everything else is passed to Spring, e.g.
+ * {@code --spring.profiles.active=default} to run against the local PostgreSQL instead of H2.
+ * With {@code --load.virtual-threads=true} every worker is a virtual thread, which allows
+ * thousands of concurrent callers on the same connection pool; the report then shows how long
+ * they queued for a pooled connection next to the row lock times. {@code --load.stripes=N} spreads
+ * the hottest {@code load.striped-accounts} accounts over N stripe rows each; combine it with
+ * {@code --balance.striping.enabled=true} so that operations find the stripes before locking.
+ */
+public final class LoadHarness {
+
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Settings settings;
+    private final BalanceService balanceService;
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final LongAdder depositedCents = new LongAdder();
+    private final LongAdder withdrawnCents = new LongAdder();
+
+    private final boolean stripingEnabled;
+
+    private LoadHarness(ConfigurableApplicationContext context) {
+        this.settings = Settings.from(context.getEnvironment());
+        this.stripingEnabled = context.getEnvironment().getProperty("balance.striping.enabled", Boolean.class, false);
+        this.balanceService = context.getBean(BalanceService.class);
+        this.accountRepository = context.getBean(AccountRepository.class);
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+        this.meterRegistry = context.getBean(MeterRegistry.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean conserved;
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(args)) {
+            conserved = new LoadHarness(context).run();
+        }
+        System.exit(conserved ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        long[] accountIds = createAccounts();
+        ZipfSampler hotAccounts = new ZipfSampler(accountIds.length, settings.zipfExponent());
+        if (settings.stripes() > 0) {
+            // Zipf rank i is accountIds[i], so the first ids are the hottest
+            for (int i = 0; i < Math.min(settings.stripedAccounts(), accountIds.length); i++) {
+                balanceService.setStripes(accountIds[i], settings.stripes());
+            }
+            System.out.printf("Striped the %d hottest accounts over %d stripes each (pre-lock check %s)%n",
+                    Math.min(settings.stripedAccounts(), accountIds.length), settings.stripes(),
+                    stripingEnabled ? "on" : "off");
+        }
+        System.out.printf("Load: %d %s threads, %ds after %ds warm-up, %d accounts, zipf %.2f "
+                        + "(hottest 1%% of accounts get %.1f%% of draws), mix deposit/withdraw/transfer %d/%d/%d%n",
+                settings.threads(), settings.virtualThreads() ? "virtual" : "platform", settings.duration().toSeconds(), settings.warmup().toSeconds(),
+                accountIds.length, settings.zipfExponent(),
+                100 * hotAccounts.share(Math.max(1, accountIds.length / 100)),
+                settings.depositPercent(), settings.withdrawPercent(), settings.transferPercent());
+
+        Ledger before = Ledger.read(jdbcTemplate);
+        long warmupEnd = System.nanoTime() + settings.warmup().toNanos();
+        long end = warmupEnd + settings.duration().toNanos();
+
+        List<WorkerStats> workers = new ArrayList<>();
+        ExecutorService executor = settings.virtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(settings.threads());
+        try {
+            List<Future<WorkerStats>> futures = new ArrayList<>();
+            for (int i = 0; i < settings.threads(); i++) {
+                futures.add(executor.submit(() -> work(accountIds, hotAccounts, warmupEnd, end)));
+            }
+            long sleepNanos = warmupEnd - System.nanoTime();
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+            MeterSnapshot metersAtStart = MeterSnapshot.take(meterRegistry);
+            for (Future<WorkerStats> future : futures) {
+                workers.add(future.get());
+            }
+            MeterSnapshot meters = MeterSnapshot.take(meterRegistry).minus(metersAtStart);
+            report(WorkerStats.merge(workers), meters);
+        } finally {
+            executor.shutdownNow();
+        }
+        return checkConservation(before, Ledger.read(jdbcTemplate));
+    }
+
+    private long[] createAccounts() {
+        return accountRepository.saveAll(IntStream.range(0, settings.accounts())
+                        .mapToObj(i -> Account.builder().userId(i).balance(settings.initialBalance()).build())
+                        .toList())
+                .stream()
+                .mapToLong(Account::getId)
+                .toArray();
+    }
+
+    private WorkerStats work(long[] accountIds, ZipfSampler hotAccounts, long warmupEnd, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        WorkerStats stats = new WorkerStats();
+        long start;
+        while ((start = System.nanoTime()) < end) {
+            Operation operation = settings.pick(random.nextInt(100));
+            Money amount = Money.ofCents(1 + random.nextLong(settings.maxAmount().cents()));
+            Outcome outcome;
+            try {
+                switch (operation) {
+                    case DEPOSIT -> {
+                        balanceService.deposit(accountIds[hotAccounts.next(random)], amount);
+                        depositedCents.add(amount.cents());
+                    }
+                    case WITHDRAW -> {
+                        balanceService.withdraw(accountIds[hotAccounts.next(random)], amount);
+                        withdrawnCents.add(amount.cents());
+                    }
+                    case TRANSFER -> {
+                        int to = hotAccounts.next(random);
+                        int from = random.nextInt(accountIds.length - 1);
+                        balanceService.transfer(accountIds[from < to ? from : from + 1], accountIds[to], amount);
+                    }
+                }
+                outcome = Outcome.OK;
+            } catch (InsufficientFundsException e) {
+                outcome = Outcome.INSUFFICIENT_FUNDS;
+            } catch (RuntimeException e) {
+                outcome = Outcome.FAILED;
+                stats.lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+            if (start >= warmupEnd) {
+                stats.record(operation, outcome, System.nanoTime() - start);
+            }
+        }
+        return stats;
+    }
+
+    private void report(WorkerStats stats, MeterSnapshot meters) {
+        double seconds = settings.duration().toNanos() / 1e9;
+        long total = 0;
+        System.out.printf("%n%-9s %9s %9s %7s %9s %8s %8s %8s %8s %8s%n",
+                "operation", "ok", "no funds", "failed", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = stats.latencies[operation.ordinal()];
+            long[] outcomes = stats.outcomes[operation.ordinal()];
+            total += histogram.getTotalCount();
+            System.out.printf("%-9s %9d %9d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    operation.name().toLowerCase(), outcomes[0], outcomes[1], outcomes[2],
+                    histogram.getTotalCount() / seconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+        System.out.printf("total     %.1f ops/s%n", total / seconds);
+        if (stats.lastError != null) {
+            System.out.println("last failure: " + stats.lastError);
+        }
+
+        System.out.println();
+        meters.lockWait().forEach((locking, timer) -> System.out.printf(
+                "lock wait (%s): %d acquisitions, mean %.3f ms, total %.1f s%n",
+                locking, timer.count(), timer.meanMillis(), timer.totalNanos() / 1e9));
+        meters.lockHold().forEach((locking, timer) -> System.out.printf(
+                "lock hold (%s): mean %.3f ms, total %.1f s%n",
+                locking, timer.meanMillis(), timer.totalNanos() / 1e9));
+        System.out.printf("connection pool wait: %d acquisitions, mean %.3f ms, total %.1f s%n",
+                meters.poolAcquire().count(), meters.poolAcquire().meanMillis(),
+                meters.poolAcquire().totalNanos() / 1e9);
+        if (meters.retries().isEmpty()) {
+            System.out.println("retries: none");
+        }
+        meters.retries().forEach((cause, count) -> System.out.printf("retries (%s): %d%n", cause, count));
+        System.out.printf("retries exhausted: %d%n", meters.retriesExhausted());
+    }
+
+    private boolean checkConservation(Ledger before, Ledger after) {
+        BigDecimal expected = Money.ofCents(depositedCents.sum() - withdrawnCents.sum()).toBigDecimal();
+        BigDecimal balances = after.balances().subtract(before.balances());
+        BigDecimal ledger = after.ledger().subtract(before.ledger());
+        BigDecimal postings = after.postings().subtract(before.postings());
+        boolean conserved = balances.compareTo(expected) == 0
+                && ledger.compareTo(expected) == 0
+                && postings.compareTo(expected) == 0
+                && after.unbalancedPostings().signum() == 0
+                && after.negativeBalances() == 0;
+        System.out.printf("%nconservation: deposits - withdrawals = %s, balances moved by %s, ledger moved by %s, "
+                        + "postings moved by %s, postings off balance by %s, negative balances: %d -> %s%n",
+                expected, balances, ledger, postings, after.unbalancedPostings(), after.negativeBalances(),
+                conserved ? "OK" : "VIOLATED");
+        return conserved;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    enum Operation {
+        DEPOSIT, WITHDRAW, TRANSFER
+    }
+
+    enum Outcome {
+        OK, INSUFFICIENT_FUNDS, FAILED
+    }
+
+    record Settings(int threads, boolean virtualThreads, Duration duration, Duration warmup, int accounts, double zipfExponent,
+                    int depositPercent, int withdrawPercent, Money initialBalance, Money maxAmount,
+                    int stripes, int stripedAccounts) {
+
+        static Settings from(Environment environment) {
+            String[] mix = environment.getProperty("load.mix", "30,20,50").split(",");
+            if (mix.length != 3) {
+                throw new IllegalArgumentException("load.mix must be deposit,withdraw,transfer percentages");
+            }
+            int deposit = Integer.parseInt(mix[0].trim());
+            int withdraw = Integer.parseInt(mix[1].trim());
+            if (deposit < 0 || withdraw < 0 || deposit + withdraw > 100
+                    || deposit + withdraw + Integer.parseInt(mix[2].trim()) != 100) {
+                throw new IllegalArgumentException("load.mix percentages must add up to 100");
+            }
+            int accounts = environment.getProperty("load.accounts", Integer.class, 1000);
+            if (accounts < 2) {
+                throw new IllegalArgumentException("load.accounts must be at least 2 for transfers");
+            }
+            return new Settings(
+                    environment.getProperty("load.threads", Integer.class, 16),
+                    environment.getProperty("load.virtual-threads", Boolean.class, false),
+                    environment.getProperty("load.duration", Duration.class, Duration.ofSeconds(30)),
+                    environment.getProperty("load.warmup", Duration.class, Duration.ofSeconds(5)),
+                    accounts,
+                    environment.getProperty("load.zipf-exponent", Double.class, 1.1),
+                    deposit,
+                    withdraw,
+                    Money.valueOf(environment.getProperty("load.initial-balance", "1000000.00")),
+                    Money.valueOf(environment.getProperty("load.max-amount", "100.00")),
+                    environment.getProperty("load.stripes", Integer.class, 0),
+                    environment.getProperty("load.striped-accounts", Integer.class, Math.max(1, accounts / 100)));
+        }
+
+        int transferPercent() {
+            return 100 - depositPercent - withdrawPercent;
+        }
+
+        Operation pick(int percentile) {
+            if (percentile < depositPercent) {
+                return Operation.DEPOSIT;
+            }
+            return percentile < depositPercent + withdrawPercent ? Operation.WITHDRAW : Operation.TRANSFER;
+        }
+    }
+
+    private static final class WorkerStats {
+
+        private final Histogram[] latencies = new Histogram[Operation.values().length];
+        private final long[][] outcomes = new long[Operation.values().length][Outcome.values().length];
+        private String lastError;
+
+        WorkerStats() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new Histogram(HIGHEST_LATENCY_NANOS, 3);
+            }
+        }
+
+        void record(Operation operation, Outcome outcome, long latencyNanos) {
+            latencies[operation.ordinal()].recordValue(Math.min(latencyNanos, HIGHEST_LATENCY_NANOS));
+            outcomes[operation.ordinal()][outcome.ordinal()]++;
+        }
+
+        static WorkerStats merge(List<WorkerStats> workers) {
+            WorkerStats merged = new WorkerStats();
+            for (WorkerStats worker : workers) {
+                for (int op = 0; op < merged.latencies.length; op++) {
+                    merged.latencies[op].add(worker.latencies[op]);
+                    for (int outcome = 0; outcome < Outcome.values().length; outcome++) {
+                        merged.outcomes[op][outcome] += worker.outcomes[op][outcome];
+                    }
+                }
+                if (worker.lastError != null) {
+                    merged.lastError = worker.lastError;
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Sum of all balances including stripes, net deposits minus withdrawals recorded in the
+     * ledger, sum of the account postings, sum of all postings including the outside side (zero
+     * when every entry balances), and the number of accounts or stripes below zero.
+     */
+    private record Ledger(BigDecimal balances, BigDecimal ledger, BigDecimal postings, BigDecimal unbalancedPostings,
+                          long negativeBalances) {
+
+        static Ledger read(JdbcTemplate jdbcTemplate) {
+            return new Ledger(
+                    jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM accounts", BigDecimal.class)
+                            .add(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM account_stripes",
+                                    BigDecimal.class)),
+                    jdbcTemplate.queryForObject("""
+                            SELECT COALESCE(SUM(CASE operation_type WHEN 'DEPOSIT' THEN amount
+                                                                    WHEN 'WITHDRAW' THEN -amount
+                                                                    ELSE 0 END), 0)
+                            FROM transactions""", BigDecimal.class),
+                    jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM postings WHERE account_id IS NOT NULL",
+                            BigDecimal.class),
+                    jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM postings", BigDecimal.class),
+                    jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE balance < 0", Long.class)
+                            + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_stripes WHERE balance < 0", Long.class));
+        }
+    }
+
+    private record TimerTotals(long count, double totalNanos) {
+
+        double meanMillis() {
+            return count == 0 ? 0 : totalNanos / count / 1e6;
+        }
+
+        TimerTotals plus(TimerTotals other) {
+            return new TimerTotals(count + other.count(), totalNanos + other.totalNanos());
+        }
+
+        TimerTotals minus(TimerTotals other) {
+            return new TimerTotals(count - other.count(), totalNanos - other.totalNanos());
+        }
+    }
+
+    private record MeterSnapshot(Map<String, TimerTotals> lockWait, Map<String, TimerTotals> lockHold,
+                                 TimerTotals poolAcquire, Map<String, Long> retries, long retriesExhausted) {
+
+        static MeterSnapshot take(MeterRegistry registry) {
+            Map<String, Long> retries = new TreeMap<>();
+            for (Counter counter : registry.find("balance.tx.retries").counters()) {
+                retries.merge(counter.getId().getTag("cause"), (long) counter.count(), Long::sum);
+            }
+            long exhausted = (long) registry.find("balance.tx.retries.exhausted").counters().stream()
+                    .mapToDouble(Counter::count)
+                    .sum();
+            TimerTotals poolAcquire = new TimerTotals(0, 0);
+            for (Timer timer : registry.find("hikaricp.connections.acquire").timers()) {
+                poolAcquire = poolAcquire.plus(new TimerTotals(timer.count(), timer.totalTime(TimeUnit.NANOSECONDS)));
+            }
+            return new MeterSnapshot(timers(registry, "balance.lock.wait"), timers(registry, "balance.lock.hold"),
+                    poolAcquire, retries, exhausted);
+        }
+
+        private static Map<String, TimerTotals> timers(MeterRegistry registry, String name) {
+            Map<String, TimerTotals> totals = new TreeMap<>();
+            for (Timer timer : registry.find(name).timers()) {
+                totals.put(timer.getId().getTag("locking"),
+                        new TimerTotals(timer.count(), timer.totalTime(TimeUnit.NANOSECONDS)));
+            }
+            return totals;
+        }
+
+        MeterSnapshot minus(MeterSnapshot earlier) {
+            Map<String, Long> retryDelta = new TreeMap<>();
+            retries.forEach((cause, count) -> {
+                long delta = count - earlier.retries().getOrDefault(cause, 0L);
+                if (delta > 0) {
+                    retryDelta.put(cause, delta);
+                }
+            });
+            return new MeterSnapshot(minus(lockWait, earlier.lockWait()), minus(lockHold, earlier.lockHold()),
+                    poolAcquire.minus(earlier.poolAcquire()), retryDelta, retriesExhausted - earlier.retriesExhausted());
+        }
+
+        private static Map<String, TimerTotals> minus(Map<String, TimerTotals> now, Map<String, TimerTotals> earlier) {
+            Map<String, TimerTotals> delta = new TreeMap<>();
+            now.forEach((tag, totals) -> {
+                delta.put(tag, totals.minus(earlier.getOrDefault(tag, new TimerTotals(0, 0))));
+            });
+            return delta;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.gopoints.balanceservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.RabbitMqConfig;
+import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.dto.TransactionDto;
+import org.gopoints.balanceservice.mapper.BalanceMapper;
+import org.gopoints.balanceservice.mapper.BalanceMapperImpl;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU-only parts of a request: MapStruct entity-to-DTO mapping, JSON rendering of a
+ * {@link TransactionDto} as the controller does it, and conversion of a {@link RabbitMessage}
+ * into an AMQP message with the converter the application registers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+    private BalanceMapper balanceMapper;
+    private ObjectWriter transactionWriter;
+    private MessageConverter messageConverter;
+
+    private Account account;
+    private Transaction transaction;
+    private TransactionDto transactionDto;
+    private RabbitMessage rabbitMessage;
+
+    @Setup
+    public void setUp() {
+        balanceMapper = new BalanceMapperImpl();
+        transactionWriter = Jackson2ObjectMapperBuilder.json().build().writerFor(TransactionDto.class);
+        messageConverter = new RabbitMqConfig().messageConverter(new BalanceProperties());
+
+        account = Account.builder().id(42L).userId(7).balance(Money.valueOf("1250.00")).version(3).build();
+        transaction = Transaction.builder()
+                .id(1001L)
+                .accountId(42L)
+                .amount(Money.valueOf("49.99"))
+                .operationType("DEPOSIT")
+                .timestamp(LocalDateTime.of(2025, 1, 15, 12, 30, 45))
+                .build();
+        transactionDto = balanceMapper.transactionToDto(transaction);
+        rabbitMessage = new RabbitMessage(42L, Money.valueOf("49.99"), "deposit", null);
+    }
+
+    @Benchmark
+    public AccountDto mapAccount() {
+        return balanceMapper.accountToDto(account);
+    }
+
+    @Benchmark
+    public TransactionDto mapTransaction() {
+        return balanceMapper.transactionToDto(transaction);
+    }
+
+    @Benchmark
+    public byte[] serializeTransactionDto() throws IOException {
+        return transactionWriter.writeValueAsBytes(transactionDto);
+    }
+
+    @Benchmark
+    public Message convertRabbitMessage() {
+        return messageConverter.toMessage(rabbitMessage, new MessageProperties());
+    }
+}
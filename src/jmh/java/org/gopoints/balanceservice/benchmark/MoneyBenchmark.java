@@ -0,0 +1,118 @@
+package org.gopoints.balanceservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.gopoints.balanceservice.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BigDecimal} versus {@link Money} on the deposit/withdraw hot path: the balance check and
+ * arithmetic of one operation, and the JSON round trip of a balance-changed message. Run with
+ * {@code -prof gc} (the profile default) to compare {@code gc.alloc.rate.norm} per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private BigDecimal decimalBalance;
+    private BigDecimal decimalAmount;
+    private Money moneyBalance;
+    private Money moneyAmount;
+
+    private ObjectWriter decimalWriter;
+    private ObjectWriter moneyWriter;
+    private ObjectReader decimalReader;
+    private ObjectReader moneyReader;
+    private String decimalJson;
+    private String moneyJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        decimalBalance = new BigDecimal("1250.00");
+        decimalAmount = new BigDecimal("49.99");
+        moneyBalance = Money.valueOf("1250.00");
+        moneyAmount = Money.valueOf("49.99");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        decimalWriter = objectMapper.writerFor(DecimalMessage.class);
+        moneyWriter = objectMapper.writerFor(MoneyMessage.class);
+        decimalReader = objectMapper.readerFor(DecimalMessage.class);
+        moneyReader = objectMapper.readerFor(MoneyMessage.class);
+        decimalJson = decimalWriter.writeValueAsString(new DecimalMessage(1L, "DEPOSIT", decimalAmount, decimalBalance));
+        moneyJson = moneyWriter.writeValueAsString(new MoneyMessage(1L, "DEPOSIT", moneyAmount, moneyBalance));
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalDepositAndWithdraw() {
+        if (decimalAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException();
+        }
+        BigDecimal balance = decimalBalance.add(decimalAmount);
+        if (balance.compareTo(decimalAmount) < 0) {
+            throw new IllegalStateException();
+        }
+        return balance.subtract(decimalAmount);
+    }
+
+    @Benchmark
+    public Money moneyDepositAndWithdraw() {
+        if (!moneyAmount.isPositive()) {
+            throw new IllegalArgumentException();
+        }
+        Money balance = moneyBalance.plus(moneyAmount);
+        if (balance.isLessThan(moneyAmount)) {
+            throw new IllegalStateException();
+        }
+        return balance.minus(moneyAmount);
+    }
+
+    /**
+     * Publishes a freshly computed balance, as the service does; serializing the same
+     * {@link BigDecimal} over and over would only measure its cached {@code toString}.
+     */
+    @Benchmark
+    public String bigDecimalSerialize() throws IOException {
+        BigDecimal balance = decimalBalance.add(decimalAmount);
+        return decimalWriter.writeValueAsString(new DecimalMessage(1L, "DEPOSIT", decimalAmount, balance));
+    }
+
+    @Benchmark
+    public String moneySerialize() throws IOException {
+        Money balance = moneyBalance.plus(moneyAmount);
+        return moneyWriter.writeValueAsString(new MoneyMessage(1L, "DEPOSIT", moneyAmount, balance));
+    }
+
+    @Benchmark
+    public DecimalMessage bigDecimalDeserialize() throws IOException {
+        return decimalReader.readValue(decimalJson);
+    }
+
+    @Benchmark
+    public MoneyMessage moneyDeserialize() throws IOException {
+        return moneyReader.readValue(moneyJson);
+    }
+
+    public record DecimalMessage(Long accountId, String operationType, BigDecimal amount, BigDecimal balance) {
+    }
+
+    public record MoneyMessage(Long accountId, String operationType, Money amount, Money balance) {
+    }
+}
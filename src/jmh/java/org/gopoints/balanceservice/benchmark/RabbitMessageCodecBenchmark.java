@@ -0,0 +1,63 @@
+package org.gopoints.balanceservice.benchmark;
+
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.RabbitMqConfig;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a transfer event with the application's converter in each wire
+ * format. The message size is printed once per fork, before the first iteration; compare
+ * {@code gc.alloc.rate.norm} for the allocation cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RabbitMessageCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private BalanceProperties.WireFormat wireFormat;
+
+    private MessageConverter messageConverter;
+    private RabbitMessage rabbitMessage;
+    private Message encoded;
+
+    @Setup
+    public void setUp() {
+        BalanceProperties properties = new BalanceProperties();
+        properties.getEvents().setWireFormat(wireFormat);
+        messageConverter = new RabbitMqConfig().messageConverter(properties);
+        rabbitMessage = new RabbitMessage(123_456L, Money.valueOf("49.99"), "transfer", 654_321L);
+        encoded = encode();
+        System.out.printf("%n%s: %d bytes per message%n", wireFormat, encoded.getBody().length);
+    }
+
+    @Benchmark
+    public Message encode() {
+        return messageConverter.toMessage(rabbitMessage, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decode() {
+        return messageConverter.fromMessage(encoded);
+    }
+}
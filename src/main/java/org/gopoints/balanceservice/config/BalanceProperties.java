@@ -0,0 +1,332 @@
+package org.gopoints.balanceservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "balance")
+public class BalanceProperties {
+
+    private final GroupCommit groupCommit = new GroupCommit();
+    private final Locking locking = new Locking();
+    private final Retry retry = new Retry();
+    private final Events events = new Events();
+    private final Outbox outbox = new Outbox();
+    private final AsyncEvents asyncEvents = new AsyncEvents();
+    private final Listener listener = new Listener();
+    private final Cache cache = new Cache();
+    private final History history = new History();
+    private final Partitions partitions = new Partitions();
+    private final Batch batch = new Batch();
+    private final Idempotency idempotency = new Idempotency();
+    private final Striping striping = new Striping();
+    private final Snapshots snapshots = new Snapshots();
+    private final Replica replica = new Replica();
+    private final Admission admission = new Admission();
+    private final Stream stream = new Stream();
+
+    @Getter
+    @Setter
+    public static class GroupCommit {
+        /**
+         * Route deposits and withdrawals through the group-commit pipeline instead of
+         * one transaction per request.
+         */
+        private boolean enabled = false;
+        /**
+         * How long the flusher waits for more operations after the first one of a batch arrives.
+         */
+        private Duration window = Duration.ofMillis(5);
+        private int maxBatchSize = 128;
+        private int queueCapacity = 10_000;
+        /**
+         * How long a caller waits for its batch to be picked up. After that the operation is
+         * withdrawn and the request fails; one already being committed is waited for instead.
+         */
+        private Duration awaitTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Locking {
+        /**
+         * How single deposits, withdrawals and transfers serialize on the account row.
+         */
+        private LockingMode mode = LockingMode.PESSIMISTIC;
+        /**
+         * Mode per account class ({@code accounts.account_class}), overriding {@code mode}. When
+         * any is set, every operation reads the class of its accounts first.
+         */
+        private Map<String, LockingMode> classes = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+        /**
+         * Total attempts, including the first one, for a transaction aborted by a deadlock or a
+         * lock/serialization failure.
+         */
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(10);
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    @Getter
+    @Setter
+    public static class Events {
+        /**
+         * How balance events reach RabbitMQ.
+         */
+        private PublishMode mode = PublishMode.OUTBOX;
+        /**
+         * Format events are published in; both are always accepted by the consumer.
+         */
+        private WireFormat wireFormat = WireFormat.JSON;
+    }
+
+    @Getter
+    @Setter
+    public static class Outbox {
+        private int batchSize = 100;
+        /**
+         * How long the relay waits for the broker to confirm a published batch.
+         */
+        private Duration confirmTimeout = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class AsyncEvents {
+        /**
+         * Events waiting for the publisher thread; committing threads wait when it is full.
+         */
+        private int queueCapacity = 10_000;
+        /**
+         * How long a committing thread waits for queue space before the event is dropped.
+         */
+        private Duration offerTimeout = Duration.ofMillis(100);
+        private int maxBatchSize = 100;
+        /**
+         * How long the publisher waits for more events after the first one of a batch arrives.
+         */
+        private Duration window = Duration.ofMillis(5);
+        private Duration confirmTimeout = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Listener {
+        /**
+         * Consume balanceQueue in batches instead of one message per delivery.
+         */
+        private boolean batchEnabled = false;
+        private int batchSize = 100;
+        /**
+         * Longest time a consumer waits to fill a batch before handing over what it has.
+         */
+        private Duration batchTimeout = Duration.ofMillis(200);
+        private int prefetch = 250;
+        private int concurrency = 1;
+        private int maxConcurrency = 4;
+        /**
+         * How often the queue depth gauge is refreshed from the broker.
+         */
+        private Duration depthPollInterval = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class History {
+        private int defaultPageSize = 100;
+        private int maxPageSize = 1000;
+        /**
+         * Rows fetched per round trip by the streaming history endpoint.
+         */
+        private int fetchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Partitions {
+        /**
+         * Create upcoming monthly partitions of the transactions table and detach expired ones.
+         * Only has an effect on PostgreSQL.
+         */
+        private boolean maintenanceEnabled = true;
+        private int monthsAhead = 3;
+        /**
+         * Months of history, including the current one, kept attached; 0 keeps every partition.
+         */
+        private int retainMonths = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /**
+         * Largest number of operations accepted by one bulk request.
+         */
+        private int maxOperations = 10_000;
+        /**
+         * Operations applied per database transaction.
+         */
+        private int chunkSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        /**
+         * How long a committed request can be replayed by its Idempotency-Key.
+         */
+        private Duration ttl = Duration.ofHours(24);
+        /**
+         * Keys kept in the in-memory front cache; older ones are still found in the database.
+         */
+        private long cacheMaximumSize = 100_000;
+        private int sweepBatchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Striping {
+        /**
+         * Check whether an account is striped before locking its row, so that operations on
+         * striped accounts never wait for it. Costs one extra read per operation; without it
+         * striped accounts stay correct but are only recognized after the row lock.
+         */
+        private boolean enabled = false;
+        private int maxStripes = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshots {
+        /**
+         * Periodically checkpoint the running balance of every account with new postings.
+         */
+        private boolean enabled = true;
+        /**
+         * How long snapshots are kept; the latest one of each account is always kept.
+         * 0 keeps every snapshot.
+         */
+        private Duration retention = Duration.ofDays(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Replica {
+        /**
+         * Send read-only transactions to the pool configured by {@code balance.replica.datasource.*}.
+         */
+        private boolean enabled = false;
+        /**
+         * Reads of an account changed by this instance within this window go to the primary.
+         * Should exceed the usual replication lag.
+         */
+        private Duration recentWriteWindow = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        /**
+         * Turn deposits, withdrawals and transfers away with 429 once the limits below are reached.
+         */
+        private boolean enabled = false;
+        /**
+         * Changes of one account in flight at once; further ones would only queue on its row lock.
+         */
+        private int perAccountLimit = 4;
+        /**
+         * Starting point and bounds of the global limit, which adapts to latency: it grows by
+         * about one per limit's worth of fast completions while in use, and shrinks by
+         * {@code backoff-ratio} when a change takes longer than {@code latency-target}, at most
+         * once per round trip: slow changes started before the last decrease do not count again.
+         */
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private Duration latencyTarget = Duration.ofMillis(250);
+        private double backoffRatio = 0.9;
+        /**
+         * Sent as {@code Retry-After} with a rejection.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        /**
+         * Open {@code /accounts/{id}/balance/stream} connections on this instance; more get 429.
+         */
+        private int maxSubscribers = 20000;
+        /**
+         * SSE comment sent on a quiet stream so that proxies keep it open and dead clients are noticed.
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+        /**
+         * The stream ends after this long and the client reconnects; must stay below
+         * {@code spring.mvc.async.request-timeout}.
+         */
+        private Duration maxDuration = Duration.ofMinutes(4);
+    }
+
+    public enum LockingMode {
+        /**
+         * {@code SELECT ... FOR UPDATE}, balance changed in Java and written back.
+         */
+        PESSIMISTIC,
+        /**
+         * One conditional {@code UPDATE} statement; the affected-row count decides the outcome.
+         */
+        CONDITIONAL_UPDATE,
+        /**
+         * Plain read, then an {@code UPDATE} conditional on the row version; a transaction that
+         * lost the race is rolled back and retried.
+         */
+        OPTIMISTIC
+    }
+
+    public enum WireFormat {
+        /**
+         * Jackson JSON, {@code application/json}.
+         */
+        JSON,
+        /**
+         * {@link BinaryRabbitMessageConverter}, a few bytes per event.
+         */
+        BINARY
+    }
+
+    public enum PublishMode {
+        /**
+         * Publish synchronously inside the ledger transaction.
+         */
+        DIRECT,
+        /**
+         * Write the event to the outbox table in the ledger transaction; the relay publishes it.
+         */
+        OUTBOX,
+        /**
+         * Collect the transaction's events and hand them to an in-memory publisher once it commits.
+         * Events are lost if the process stops before they are published.
+         */
+        AFTER_COMMIT
+    }
+}
@@ -1,20 +1,49 @@
 package org.gopoints.balanceservice.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.gopoints.balanceservice.service.BalanceCache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
-
 @Configuration
 public class CacheConfig {
+
+    public static final String IDEMPOTENCY_CACHE_NAME = "idempotency";
+
+    @Bean
+    public Cache<Long, BalanceCache.CachedBalance> balanceCaffeineCache(BalanceProperties balanceProperties) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(balanceProperties.getCache().getExpireAfterWrite())
+                .maximumSize(balanceProperties.getCache().getMaximumSize())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Front cache of committed idempotency keys, mapped to their request fingerprint.
+     */
+    @Bean
+    public Cache<String, String> idempotencyCaffeineCache(BalanceProperties balanceProperties) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(balanceProperties.getIdempotency().getTtl())
+                .maximumSize(balanceProperties.getIdempotency().getCacheMaximumSize())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Registers the caches with the cache manager so Actuator publishes their hit, miss and
+     * eviction statistics as the {@code cache.*} meters.
+     */
     @Bean
-    public CaffeineCacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager("balance");
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .maximumSize(1000));
+    @SuppressWarnings("unchecked")
+    public CaffeineCacheManager cacheManager(Cache<Long, BalanceCache.CachedBalance> balanceCaffeineCache,
+                                             Cache<String, String> idempotencyCaffeineCache) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(BalanceCache.CACHE_NAME, (Cache<Object, Object>) (Cache<?, ?>) balanceCaffeineCache);
+        cacheManager.registerCustomCache(IDEMPOTENCY_CACHE_NAME, (Cache<Object, Object>) (Cache<?, ?>) idempotencyCaffeineCache);
         return cacheManager;
     }
 }
@@ -0,0 +1,89 @@
+package org.gopoints.balanceservice.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import jakarta.annotation.PreDestroy;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.repository.ReactiveAccountRepository;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * R2DBC side of the reactive read API, configured by {@code spring.r2dbc.*}.
+ * <p>
+ * Boot's R2DBC auto-configuration is excluded and the connection pool is deliberately not a bean:
+ * any {@code ConnectionFactory} bean makes Boot skip the JDBC {@code DataSource}, which the ledger,
+ * JPA and Liquibase depend on. Only the {@link DatabaseClient} is exposed, and Spring Data R2DBC
+ * builds its entity template and repositories on top of it.
+ */
+@Configuration
+@EnableConfigurationProperties(R2dbcProperties.class)
+@EnableR2dbcRepositories(basePackageClasses = ReactiveAccountRepository.class)
+public class R2dbcConfig {
+
+    private final ConnectionPool connectionPool;
+
+    public R2dbcConfig(R2dbcProperties properties) {
+        R2dbcProperties.Pool pool = properties.getPool();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactoryBuilder.withUrl(properties.getUrl())
+                        .username(properties.getUsername())
+                        .password(properties.getPassword())
+                        .build())
+                .name("r2dbc")
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient r2dbcDatabaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    /**
+     * Same {@link Money} mapping as the JPA {@code MoneyConverter}: {@code DECIMAL(…,2)} columns.
+     */
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(DialectResolver.getDialect(connectionPool),
+                List.of(new MoneyReadingConverter(), new MoneyWritingConverter()));
+    }
+
+    @PreDestroy
+    public void closeConnectionPool() {
+        connectionPool.dispose();
+    }
+
+    @ReadingConverter
+    static class MoneyReadingConverter implements Converter<BigDecimal, Money> {
+
+        @Override
+        public Money convert(BigDecimal amount) {
+            return Money.of(amount);
+        }
+    }
+
+    @WritingConverter
+    static class MoneyWritingConverter implements Converter<Money, BigDecimal> {
+
+        @Override
+        public BigDecimal convert(Money money) {
+            return money.toBigDecimal();
+        }
+    }
+}
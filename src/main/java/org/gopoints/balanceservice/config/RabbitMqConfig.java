@@ -1,22 +1,49 @@
 package org.gopoints.balanceservice.config;
 
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Date;
+
 @Configuration
 public class RabbitMqConfig {
 
     private static final String QUEUE_NAME = "balanceQueue";
+
+    /**
+     * Writes events in {@code balance.events.wire-format} and reads both formats, chosen by the
+     * message's content type, so producers and consumers can switch formats one at a time.
+     */
+    @Bean
+    public MessageConverter messageConverter(BalanceProperties balanceProperties) {
+        MessageConverter json = new Jackson2JsonMessageConverter();
+        MessageConverter binary = new BinaryRabbitMessageConverter();
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(
+                balanceProperties.getEvents().getWireFormat() == BalanceProperties.WireFormat.BINARY ? binary : json);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(BinaryRabbitMessageConverter.CONTENT_TYPE, binary);
+        return converter;
+    }
+
     @Bean
-    public RabbitTemplate jsonConverter(ConnectionFactory connectionFactory) {
+    public RabbitTemplate jsonConverter(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+        rabbitTemplate.setMessageConverter(messageConverter);
+        // lets consumers measure how long a message waited in the queue
+        rabbitTemplate.setBeforePublishPostProcessors(message -> {
+            message.getMessageProperties().setTimestamp(new Date());
+            return message;
+        });
         return rabbitTemplate;
     }
 
@@ -25,4 +52,27 @@ public class RabbitMqConfig {
         return new Queue(QUEUE_NAME, false);
     }
 
+    /**
+     * Container factory for the batch listener: each consumer collects up to
+     * {@code balance.listener.batch-size} messages and delivers them as one list.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            BalanceProperties balanceProperties) {
+        BalanceProperties.Listener listener = balanceProperties.getListener();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(listener.getBatchSize());
+        factory.setReceiveTimeout(listener.getBatchTimeout().toMillis());
+        factory.setPrefetchCount(Math.max(listener.getPrefetch(), listener.getBatchSize()));
+        factory.setConcurrentConsumers(listener.getConcurrency());
+        factory.setMaxConcurrentConsumers(Math.max(listener.getConcurrency(), listener.getMaxConcurrency()));
+        return factory;
+    }
+
 }
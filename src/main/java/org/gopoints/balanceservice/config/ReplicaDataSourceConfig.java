@@ -0,0 +1,51 @@
+package org.gopoints.balanceservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Primary and replica connection pools behind one routing {@link DataSource}, enabled by
+ * {@code balance.replica.enabled}.
+ * <p>
+ * Declaring a {@code DataSource} makes Boot skip its own, so the primary pool is built here from
+ * the same {@code spring.datasource.*} and {@code spring.datasource.hikari.*} properties. The
+ * replica pool is a separate Hikari pool configured by {@code balance.replica.datasource.*}
+ * (Hikari property names: {@code jdbc-url}, {@code maximum-pool-size}, ...). JPA, Liquibase and
+ * {@code JdbcTemplate} all get the routing one; Liquibase and every writing transaction end up on
+ * the primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "balance.replica", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("balance.replica.datasource")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+}
@@ -1,25 +1,70 @@
 package org.gopoints.balanceservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
 import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.dto.BalanceAtDto;
+import org.gopoints.balanceservice.dto.BalanceSummaryDto;
+import org.gopoints.balanceservice.dto.BatchOperationRequest;
+import org.gopoints.balanceservice.dto.BatchOperationResponse;
+import org.gopoints.balanceservice.dto.BatchOperationResultDto;
+import org.gopoints.balanceservice.dto.LedgerAuditDto;
+import org.gopoints.balanceservice.dto.PostingDto;
 import org.gopoints.balanceservice.dto.TransactionDto;
-import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.dto.TransactionPageDto;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.OperationType;
+import org.gopoints.balanceservice.model.ReadConsistency;
 import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.model.TransactionCursor;
+import org.gopoints.balanceservice.service.AdmissionControl;
+import org.gopoints.balanceservice.service.BalanceCache;
+import org.gopoints.balanceservice.service.BalanceMetrics;
+import org.gopoints.balanceservice.service.BalanceRollupService;
 import org.gopoints.balanceservice.service.BalanceService;
+import org.gopoints.balanceservice.service.BalanceSnapshotService;
+import org.gopoints.balanceservice.service.BalanceStreamService;
+import org.gopoints.balanceservice.service.BatchOperationService;
+import org.gopoints.balanceservice.service.GroupCommitService;
+import org.gopoints.balanceservice.service.IdempotencyService;
+import org.gopoints.balanceservice.service.PostingService;
+import org.gopoints.balanceservice.service.ReadConsistencyGuard;
 import org.gopoints.balanceservice.mapper.BalanceMapper;
-import org.springframework.cache.annotation.CachePut;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.gopoints.balanceservice.model.exceptions.IdempotencyKeyReusedException;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -30,61 +75,360 @@ public class BalanceController {
 
     private final BalanceService balanceService;
     private final BalanceMapper balanceMapper;
+    private final GroupCommitService groupCommitService;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceCache balanceCache;
+    private final BalanceProperties balanceProperties;
+    private final ObjectMapper objectMapper;
+    private final BalanceRollupService balanceRollupService;
+    private final BatchOperationService batchOperationService;
+    private final IdempotencyService idempotencyService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final PostingService postingService;
+    private final ReadConsistencyGuard readConsistencyGuard;
+    private final AdmissionControl admissionControl;
+    private final BalanceStreamService balanceStreamService;
 
     @PostMapping("/{accountId}/deposit")
-    @CachePut(value = "balance", key = "#accountId")
-    public void deposit(@PathVariable Long accountId, @RequestParam BigDecimal amount) {
-        try {
-            log.info("REST request: deposit, accountId={}, amount={}", accountId, amount);
-            balanceService.deposit(accountId, amount);
+    public ResponseEntity<Void> deposit(@PathVariable Long accountId, @RequestParam Money amount,
+                                        @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        try (AdmissionControl.Permit permit = admissionControl.acquire(accountId)) {
+            log.info("REST request: deposit, accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
+            if (idempotencyKey != null) {
+                return idempotent(idempotencyKey, "deposit", IdempotencyService.fingerprint("deposit", accountId, amount),
+                        () -> balanceService.deposit(accountId, amount));
+            }
+            if (groupCommitService.isEnabled()) {
+                balanceMetrics.recordOperation("deposit", BalanceMetrics.PATH_GROUP_COMMIT,
+                        () -> groupCommitService.deposit(accountId, amount));
+            } else {
+                balanceMetrics.recordOperation("deposit", BalanceMetrics.PATH_DIRECT,
+                        () -> balanceService.deposit(accountId, amount));
+            }
+            return ResponseEntity.ok().build();
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
     @PostMapping("/{accountId}/withdraw")
-    @CachePut(value = "balance", key = "#accountId")
-    public void withdraw(@PathVariable Long accountId, @RequestParam BigDecimal amount) {
-        try {
-            log.info("REST request: withdraw, accountId={}, amount={}", accountId, amount);
-            balanceService.withdraw(accountId, amount);
+    public ResponseEntity<Void> withdraw(@PathVariable Long accountId, @RequestParam Money amount,
+                                         @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        try (AdmissionControl.Permit permit = admissionControl.acquire(accountId)) {
+            log.info("REST request: withdraw, accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
+            if (idempotencyKey != null) {
+                return idempotent(idempotencyKey, "withdraw", IdempotencyService.fingerprint("withdraw", accountId, amount),
+                        () -> balanceService.withdraw(accountId, amount));
+            }
+            if (groupCommitService.isEnabled()) {
+                balanceMetrics.recordOperation("withdraw", BalanceMetrics.PATH_GROUP_COMMIT,
+                        () -> groupCommitService.withdraw(accountId, amount));
+            } else {
+                balanceMetrics.recordOperation("withdraw", BalanceMetrics.PATH_DIRECT,
+                        () -> balanceService.withdraw(accountId, amount));
+            }
+            return ResponseEntity.ok().build();
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
     @PostMapping("/transfer")
-    public void transfer(@RequestParam Long fromAccountId,
-                         @RequestParam Long toAccountId,
-                         @RequestParam BigDecimal amount) {
+    public ResponseEntity<Void> transfer(@RequestParam Long fromAccountId,
+                                         @RequestParam Long toAccountId,
+                                         @RequestParam Money amount,
+                                         @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        try (AdmissionControl.Permit permit = admissionControl.acquire(fromAccountId, toAccountId)) {
+        log.info("REST request: transfer, fromId={}, toId={}, amount={}, idempotencyKey={}",
+                fromAccountId, toAccountId, amount, idempotencyKey);
+        if (idempotencyKey != null) {
+            return idempotent(idempotencyKey, "transfer",
+                    IdempotencyService.fingerprint("transfer", fromAccountId, toAccountId, amount),
+                    () -> balanceService.transfer(fromAccountId, toAccountId, amount));
+        }
+        balanceMetrics.recordOperation("transfer", BalanceMetrics.PATH_DIRECT,
+                () -> balanceService.transfer(fromAccountId, toAccountId, amount));
+        return ResponseEntity.ok().build();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Applies many deposits, withdrawals and transfers in a few transactions. Each operation gets
+     * its own result; a rejected operation does not affect the others.
+     */
+    @PostMapping("/operations/batch")
+    public BatchOperationResponse batch(@RequestBody BatchOperationRequest request) {
+        try {
+            int size = request.operations() == null ? 0 : request.operations().size();
+            log.info("REST request: batch, operations={}", size);
+            List<LedgerOperation> operations = size == 0 ? List.of() : request.operations().stream()
+                    .map(balanceMapper::batchOperationToLedgerOperation)
+                    .toList();
+            List<LedgerOperationResult> results = balanceMetrics.recordOperation("batch", BalanceMetrics.PATH_DIRECT,
+                    () -> batchOperationService.execute(operations));
+
+            List<BatchOperationResultDto> items = new ArrayList<>(results.size());
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                LedgerOperationResult result = results.get(i);
+                if (!result.isSuccess()) {
+                    failed++;
+                    OperationType type = operations.get(i).type();
+                    if (type != null) {
+                        balanceMetrics.countRejection(type.name().toLowerCase(), result.error());
+                    }
+                }
+                items.add(toResultDto(i, result));
+            }
+            return new BatchOperationResponse(results.size() - failed, failed, items);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Spreads the account's balance over {@code count} stripe rows so that concurrent deposits do
+     * not queue on its row lock; {@code count} 0 switches striping off again.
+     */
+    @PutMapping("/{accountId}/stripes")
+    public ResponseEntity<Void> setStripes(@PathVariable Long accountId, @RequestParam int count) {
         try {
-        log.info("REST request: transfer, fromId={}, toId={}, amount={}", fromAccountId, toAccountId, amount);
-        balanceService.transfer(fromAccountId, toAccountId, amount);
+            log.info("REST request: setStripes, accountId={}, count={}", accountId, count);
+            balanceService.setStripes(accountId, count);
+            return ResponseEntity.ok().build();
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    /**
+     * {@code consistency=strong} reads the primary past the cache, for a client that changed the
+     * account through another instance.
+     */
     @GetMapping("/{accountId}/balance")
-    public AccountDto getBalance(@PathVariable Long accountId) {
-        log.info("REST request: getBalance, accountId={}", accountId);
-        Account account = balanceService.getAccount(accountId);
-        return balanceMapper.accountToDto(account);
+    public AccountDto getBalance(@PathVariable Long accountId,
+                                 @RequestParam(required = false) String consistency) {
+        log.info("REST request: getBalance, accountId={}, consistency={}", accountId, consistency);
+        ReadConsistency readConsistency = readConsistency(consistency);
+        if (readConsistency == ReadConsistency.STRONG) {
+            return readConsistencyGuard.read(accountId, readConsistency,
+                    () -> balanceMapper.accountToDto(balanceService.getAccount(accountId)));
+        }
+        return readConsistencyGuard.read(accountId, readConsistency, () -> balanceCache.get(accountId));
+    }
+
+    /**
+     * Server-sent events with the current balance and then each committed change of it, as
+     * {@code balance} events whose id is the row version. A client that reads slower than the
+     * account changes skips to the latest balance. Comments are sent as heartbeats while the
+     * account is quiet, and the stream ends after {@code balance.stream.max-duration} so that
+     * the client reconnects.
+     */
+    @GetMapping(value = "/{accountId}/balance/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AccountDto>> streamBalance(@PathVariable Long accountId) {
+        log.info("REST request: streamBalance, accountId={}", accountId);
+        BalanceProperties.Stream stream = balanceProperties.getStream();
+        Flux<ServerSentEvent<AccountDto>> balances = balanceStreamService.balances(accountId)
+                .map(event -> ServerSentEvent.builder(new AccountDto(event.accountId(), event.userId(), event.balance()))
+                        .event("balance")
+                        .id(String.valueOf(event.version()))
+                        .build());
+        Flux<ServerSentEvent<AccountDto>> heartbeats = Flux.interval(stream.getHeartbeatInterval())
+                .map(tick -> ServerSentEvent.<AccountDto>builder().comment("heartbeat").build());
+        return Flux.merge(balances, heartbeats)
+                .onBackpressureLatest()
+                .take(stream.getMaxDuration());
+    }
+
+    /**
+     * Balance right after the last posting made up to {@code timestamp}.
+     */
+    @GetMapping("/{accountId}/balance/at")
+    public BalanceAtDto getBalanceAt(@PathVariable Long accountId, @RequestParam String timestamp) {
+        log.info("REST request: getBalanceAt, accountId={}, timestamp={}", accountId, timestamp);
+        return balanceSnapshotService.getBalanceAt(accountId, LocalDateTime.parse(timestamp));
+    }
+
+    /**
+     * Stored balance checked against the latest snapshot and the postings after it.
+     */
+    @GetMapping("/{accountId}/audit")
+    public LedgerAuditDto audit(@PathVariable Long accountId) {
+        log.info("REST request: audit, accountId={}", accountId);
+        return balanceSnapshotService.audit(accountId);
+    }
+
+    /**
+     * Postings of the account in the period, including the incoming side of transfers.
+     */
+    @GetMapping("/{accountId}/postings")
+    public List<PostingDto> getPostingsByPeriod(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+
+        LocalDateTime start = LocalDateTime.parse(startDate);
+        LocalDateTime end = LocalDateTime.parse(endDate);
+
+        log.info("REST request: getPostingsByPeriod, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
+        return postingService.getPostingsByPeriod(accountId, start, end).stream()
+                .map(balanceMapper::postingToDto)
+                .toList();
     }
 
     @GetMapping("/{accountId}/transactions")
     public List<TransactionDto> getTransactionsByPeriod(
             @PathVariable Long accountId,
             @RequestParam String startDate,
-            @RequestParam String endDate) {
+            @RequestParam String endDate,
+            @RequestParam(required = false) String consistency) {
 
         LocalDateTime start = LocalDateTime.parse(startDate);
         LocalDateTime end = LocalDateTime.parse(endDate);
 
         log.info("REST request: getTransactionsByPeriod, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
-        List<Transaction> transactions = balanceService.getTransactionsByPeriod(accountId, start, end);
+        List<Transaction> transactions = readConsistencyGuard.read(accountId, readConsistency(consistency),
+                () -> balanceService.getTransactionsByPeriod(accountId, start, end));
         return transactions.stream()
                 .map(balanceMapper::transactionToDto)
                 .toList();
     }
+
+    /**
+     * Period totals answered from the daily rollups; both dates are inclusive.
+     */
+    @GetMapping("/{accountId}/summary")
+    public BalanceSummaryDto getSummary(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+
+        LocalDate start = LocalDate.parse(startDate);
+        LocalDate end = LocalDate.parse(endDate);
+
+        log.info("REST request: getSummary, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
+        try {
+            return balanceRollupService.getSummary(accountId, start, end);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{accountId}/transactions/page")
+    public TransactionPageDto getTransactionsPage(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String consistency) {
+
+        LocalDateTime start = LocalDateTime.parse(startDate);
+        LocalDateTime end = LocalDateTime.parse(endDate);
+
+        log.info("REST request: getTransactionsPage, accountId={}, startDate={}, endDate={}, cursor={}, limit={}",
+                accountId, startDate, endDate, cursor, limit);
+        try {
+            BalanceProperties.History history = balanceProperties.getHistory();
+            int pageSize = limit == null ? history.getDefaultPageSize() : limit;
+            if (pageSize <= 0 || pageSize > history.getMaxPageSize()) {
+                throw new IllegalArgumentException("Page limit must be between 1 and " + history.getMaxPageSize());
+            }
+            TransactionCursor after = cursor == null ? null : TransactionCursor.decode(cursor);
+
+            // one extra row tells whether another page follows
+            List<Transaction> rows = readConsistencyGuard.read(accountId, readConsistency(consistency),
+                    () -> balanceService.getTransactionsPage(accountId, start, end, after, pageSize + 1));
+            boolean hasMore = rows.size() > pageSize;
+            List<Transaction> page = hasMore ? rows.subList(0, pageSize) : rows;
+            String nextCursor = hasMore ? TransactionCursor.after(page.getLast()).encode() : null;
+            return new TransactionPageDto(page.stream().map(balanceMapper::transactionToDto).toList(), nextCursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the whole period as newline-delimited JSON. Rows are written as they are read from
+     * the database cursor, so memory use does not depend on the length of the period.
+     */
+    @GetMapping(value = "/{accountId}/transactions/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamTransactionsByPeriod(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false) String consistency) {
+
+        LocalDateTime start = LocalDateTime.parse(startDate);
+        LocalDateTime end = LocalDateTime.parse(endDate);
+        ReadConsistency readConsistency = readConsistency(consistency);
+
+        log.info("REST request: streamTransactionsByPeriod, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
+        ObjectWriter writer = objectMapper.writerFor(TransactionDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                readConsistencyGuard.read(accountId, readConsistency, () ->
+                        balanceService.streamTransactionsByPeriod(accountId, start, end, transaction -> {
+                            try {
+                                writer.writeValue(generator, balanceMapper.transactionToDto(transaction));
+                                generator.writeRaw('\n');
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }));
+            }
+        };
+    }
+
+    private static ReadConsistency readConsistency(String consistency) {
+        try {
+            return ReadConsistency.parse(consistency);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Requests carrying an idempotency key always take the direct path, because the key has to be
+     * written in the same transaction as the ledger change.
+     */
+    private ResponseEntity<Void> idempotent(String idempotencyKey, String type, String fingerprint, Runnable action) {
+        try {
+            boolean replayed = balanceMetrics.recordOperation(type, BalanceMetrics.PATH_DIRECT,
+                    () -> idempotencyService.execute(idempotencyKey, type, fingerprint, action));
+            return ResponseEntity.ok()
+                    .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(replayed))
+                    .build();
+        } catch (IdempotencyKeyReusedException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+    }
+
+    private BatchOperationResultDto toResultDto(int index, LedgerOperationResult result) {
+        if (result.isSuccess()) {
+            return new BatchOperationResultDto(index, "OK", result.balance(), null);
+        }
+        String status = switch (result.error()) {
+            case AccountNotFoundException e -> "ACCOUNT_NOT_FOUND";
+            case InsufficientFundsException e -> "INSUFFICIENT_FUNDS";
+            default -> "INVALID";
+        };
+        return new BatchOperationResultDto(index, status, null, result.error().getMessage());
+    }
+
+    /**
+     * Deposits, withdrawals and transfers turned away by {@link AdmissionControl}, and balance
+     * streams beyond {@code balance.stream.max-subscribers}.
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Void> admissionRejected(AdmissionRejectedException e) {
+        log.debug("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
 }
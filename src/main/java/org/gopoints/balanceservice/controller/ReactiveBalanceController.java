@@ -0,0 +1,176 @@
+package org.gopoints.balanceservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.dto.TransactionDto;
+import org.gopoints.balanceservice.mapper.BalanceMapper;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.gopoints.balanceservice.model.exceptions.IdempotencyKeyReusedException;
+import org.gopoints.balanceservice.repository.ReactiveAccountRepository;
+import org.gopoints.balanceservice.repository.ReactiveTransactionRepository;
+import org.gopoints.balanceservice.service.AdmissionControl;
+import org.gopoints.balanceservice.service.BalanceMetrics;
+import org.gopoints.balanceservice.service.BalanceService;
+import org.gopoints.balanceservice.service.GroupCommitService;
+import org.gopoints.balanceservice.service.IdempotencyService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking variant of {@link BalanceController} under {@code /reactive/accounts}.
+ * <p>
+ * Reads go through the R2DBC repositories and never occupy a request thread while waiting for
+ * the database; the history endpoints stream rows at the pace the client reads them. Mutations
+ * run the same {@link BalanceService} code as the blocking API (row locks, ledger row, rollup and
+ * outbox event in one JDBC transaction) on the bounded elastic scheduler, so both APIs keep
+ * identical guarantees.
+ */
+@RestController
+@RequestMapping("/reactive/accounts")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveBalanceController {
+
+    private final ReactiveAccountRepository reactiveAccountRepository;
+    private final ReactiveTransactionRepository reactiveTransactionRepository;
+    private final BalanceService balanceService;
+    private final BalanceMapper balanceMapper;
+    private final GroupCommitService groupCommitService;
+    private final BalanceMetrics balanceMetrics;
+    private final IdempotencyService idempotencyService;
+    private final AdmissionControl admissionControl;
+
+    @PostMapping("/{accountId}/deposit")
+    public Mono<ResponseEntity<Void>> deposit(@PathVariable Long accountId, @RequestParam Money amount,
+                                              @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        log.info("Reactive request: deposit, accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
+        return mutate("deposit", new Long[]{accountId}, idempotencyKey, () -> IdempotencyService.fingerprint("deposit", accountId, amount),
+                () -> balanceService.deposit(accountId, amount), () -> groupCommitService.deposit(accountId, amount));
+    }
+
+    @PostMapping("/{accountId}/withdraw")
+    public Mono<ResponseEntity<Void>> withdraw(@PathVariable Long accountId, @RequestParam Money amount,
+                                               @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        log.info("Reactive request: withdraw, accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
+        return mutate("withdraw", new Long[]{accountId}, idempotencyKey, () -> IdempotencyService.fingerprint("withdraw", accountId, amount),
+                () -> balanceService.withdraw(accountId, amount), () -> groupCommitService.withdraw(accountId, amount));
+    }
+
+    @PostMapping("/transfer")
+    public Mono<ResponseEntity<Void>> transfer(@RequestParam Long fromAccountId,
+                                               @RequestParam Long toAccountId,
+                                               @RequestParam Money amount,
+                                               @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        log.info("Reactive request: transfer, fromId={}, toId={}, amount={}, idempotencyKey={}",
+                fromAccountId, toAccountId, amount, idempotencyKey);
+        return mutate("transfer", new Long[]{fromAccountId, toAccountId}, idempotencyKey,
+                () -> IdempotencyService.fingerprint("transfer", fromAccountId, toAccountId, amount),
+                () -> balanceService.transfer(fromAccountId, toAccountId, amount), null);
+    }
+
+    /**
+     * Reads the committed balance straight from the database; unlike the blocking endpoint it does
+     * not go through {@code BalanceCache}.
+     */
+    @GetMapping("/{accountId}/balance")
+    public Mono<AccountDto> getBalance(@PathVariable Long accountId) {
+        log.info("Reactive request: getBalance, accountId={}", accountId);
+        return reactiveAccountRepository.findWithTotalBalance(accountId)
+                .map(balanceMapper::accountRowToDto)
+                .switchIfEmpty(Mono.error(() -> new AccountNotFoundException("Account not found: " + accountId)));
+    }
+
+    /**
+     * The period as one JSON array, collected before it is written.
+     */
+    @GetMapping(value = "/{accountId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<TransactionDto>> getTransactionsByPeriod(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+
+        log.info("Reactive request: getTransactionsByPeriod, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
+        return transactionsByPeriod(accountId, startDate, endDate).collectList();
+    }
+
+    /**
+     * Streams the period as newline-delimited JSON in {@code (timestamp, id)} order. Each row is
+     * requested from the database only after the previous one was written, so a slow client
+     * holds back the cursor instead of filling memory.
+     */
+    @GetMapping(value = "/{accountId}/transactions/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<TransactionDto> streamTransactionsByPeriod(
+            @PathVariable Long accountId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+
+        log.info("Reactive request: streamTransactionsByPeriod, accountId={}, startDate={}, endDate={}", accountId, startDate, endDate);
+        return transactionsByPeriod(accountId, startDate, endDate);
+    }
+
+    private Flux<TransactionDto> transactionsByPeriod(Long accountId, String startDate, String endDate) {
+        LocalDateTime start = LocalDateTime.parse(startDate);
+        LocalDateTime end = LocalDateTime.parse(endDate);
+        return reactiveTransactionRepository.streamByPeriod(accountId, start, end)
+                .map(balanceMapper::transactionRowToDto);
+    }
+
+    /**
+     * Runs a ledger change off the request thread. Requests with an idempotency key take the
+     * direct path, as in {@link BalanceController}, because the key is written in the same
+     * transaction as the change. {@link AdmissionControl} holds a permit for the accounts while
+     * the change runs.
+     *
+     * @param groupCommitted the same change through {@link GroupCommitService}, used when it is
+     *                       enabled; {@code null} for operations it does not support
+     */
+    private Mono<ResponseEntity<Void>> mutate(String type, Long[] accountIds, String idempotencyKey,
+                                              Supplier<String> fingerprint, Runnable direct, Runnable groupCommitted) {
+        return Mono.fromCallable(() -> {
+                    try (AdmissionControl.Permit permit = admissionControl.acquire(accountIds)) {
+                        if (idempotencyKey != null) {
+                            boolean replayed = balanceMetrics.recordOperation(type, BalanceMetrics.PATH_DIRECT,
+                                    () -> idempotencyService.execute(idempotencyKey, type, fingerprint.get(), direct));
+                            return ResponseEntity.ok()
+                                    .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(replayed))
+                                    .<Void>build();
+                        }
+                        if (groupCommitted != null && groupCommitService.isEnabled()) {
+                            balanceMetrics.recordOperation(type, BalanceMetrics.PATH_GROUP_COMMIT, groupCommitted);
+                        } else {
+                            balanceMetrics.recordOperation(type, BalanceMetrics.PATH_DIRECT, direct);
+                        }
+                        return ResponseEntity.ok().<Void>build();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(IdempotencyKeyReusedException.class,
+                        e -> new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage()))
+                .onErrorResume(AdmissionRejectedException.class, e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .<Void>build()));
+    }
+}
@@ -1,10 +1,10 @@
 package org.gopoints.balanceservice.dto;
 
-import java.math.BigDecimal;
+import org.gopoints.balanceservice.model.Money;
 
 public record AccountDto(
         Long id,
         Integer userId,
-        BigDecimal balance
+        Money balance
 ) {
 }
@@ -0,0 +1,12 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+
+import java.time.LocalDateTime;
+
+public record BalanceAtDto(
+        Long accountId,
+        LocalDateTime timestamp,
+        Money balance
+) {
+}
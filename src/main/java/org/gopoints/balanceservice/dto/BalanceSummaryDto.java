@@ -0,0 +1,22 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+
+import java.time.LocalDate;
+
+public record BalanceSummaryDto(
+        Long accountId,
+        LocalDate startDate,
+        LocalDate endDate,
+        Money openingBalance,
+        Money closingBalance,
+        Money depositTotal,
+        long depositCount,
+        Money withdrawTotal,
+        long withdrawCount,
+        Money transferOutTotal,
+        long transferOutCount,
+        Money transferInTotal,
+        long transferInCount
+) {
+}
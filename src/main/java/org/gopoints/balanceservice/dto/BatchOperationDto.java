@@ -0,0 +1,12 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.OperationType;
+
+public record BatchOperationDto(
+        OperationType type,
+        Long accountId,
+        Long toAccountId,
+        Money amount
+) {
+}
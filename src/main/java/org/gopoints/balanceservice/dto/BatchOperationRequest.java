@@ -0,0 +1,8 @@
+package org.gopoints.balanceservice.dto;
+
+import java.util.List;
+
+public record BatchOperationRequest(
+        List<BatchOperationDto> operations
+) {
+}
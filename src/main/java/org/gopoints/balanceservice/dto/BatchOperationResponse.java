@@ -0,0 +1,10 @@
+package org.gopoints.balanceservice.dto;
+
+import java.util.List;
+
+public record BatchOperationResponse(
+        int succeeded,
+        int failed,
+        List<BatchOperationResultDto> results
+) {
+}
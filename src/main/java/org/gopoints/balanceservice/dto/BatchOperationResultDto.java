@@ -0,0 +1,11 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+
+public record BatchOperationResultDto(
+        int index,
+        String status,
+        Money balance,
+        String error
+) {
+}
@@ -0,0 +1,22 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+
+import java.time.LocalDateTime;
+
+/**
+ * The stored balance next to the one rebuilt from the latest snapshot and the postings after it.
+ * The snapshot fields are {@code null} while the account has no snapshot; the ledger balance then
+ * starts from zero.
+ */
+public record LedgerAuditDto(
+        Long accountId,
+        Money balance,
+        Money ledgerBalance,
+        Long snapshotPostingId,
+        Money snapshotBalance,
+        LocalDateTime snapshotTakenAt,
+        long postingsAfterSnapshot,
+        boolean consistent
+) {
+}
@@ -0,0 +1,14 @@
+package org.gopoints.balanceservice.dto;
+
+import org.gopoints.balanceservice.model.Money;
+
+import java.time.LocalDateTime;
+
+public record PostingDto(
+        Long id,
+        Long transactionId,
+        Long accountId,
+        Money amount,
+        LocalDateTime postedAt
+) {
+}
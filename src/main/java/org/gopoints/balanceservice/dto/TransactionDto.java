@@ -1,12 +1,13 @@
 package org.gopoints.balanceservice.dto;
 
-import java.math.BigDecimal;
+import org.gopoints.balanceservice.model.Money;
+
 import java.time.LocalDateTime;
 
 public record TransactionDto(
         Long id,
         Long accountId,
-        BigDecimal amount,
+        Money amount,
         String operationType,
         LocalDateTime timestamp
 ) {
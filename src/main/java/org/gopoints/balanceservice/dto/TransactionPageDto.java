@@ -0,0 +1,9 @@
+package org.gopoints.balanceservice.dto;
+
+import java.util.List;
+
+public record TransactionPageDto(
+        List<TransactionDto> items,
+        String nextCursor
+) {
+}
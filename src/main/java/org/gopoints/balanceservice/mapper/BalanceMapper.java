@@ -1,9 +1,15 @@
 package org.gopoints.balanceservice.mapper;
 
 import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.dto.BatchOperationDto;
+import org.gopoints.balanceservice.dto.PostingDto;
 import org.gopoints.balanceservice.dto.TransactionDto;
 import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountRow;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.Posting;
 import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.model.TransactionRow;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
@@ -11,10 +17,23 @@ import org.mapstruct.Mapping;
 public interface BalanceMapper {
 
     AccountDto accountToDto(Account account);
+
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "stripes", ignore = true)
+    @Mapping(target = "accountClass", ignore = true)
     Account accountDtoToEntity(AccountDto accountDto);
 
     TransactionDto transactionToDto(Transaction transaction);
 
+    AccountDto accountRowToDto(AccountRow account);
+
+    TransactionDto transactionRowToDto(TransactionRow transaction);
+
+    PostingDto postingToDto(Posting posting);
+
     @Mapping(target = "timestamp", expression = "java(java.time.LocalDateTime.now())")
     Transaction transactionDtoToEntity(TransactionDto transactionDto);
+
+    @Mapping(target = "targetAccountId", source = "toAccountId")
+    LedgerOperation batchOperationToLedgerOperation(BatchOperationDto batchOperationDto);
 }
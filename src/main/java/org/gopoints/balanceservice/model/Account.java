@@ -5,14 +5,13 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 @Entity
 @Table(name = "accounts")
 @Getter
@@ -28,5 +27,23 @@ public class Account {
 
     private Integer userId;
 
-    private BigDecimal balance;
+    private Money balance;
+
+    /**
+     * Incremented by every balance change; lets caches discard out-of-order updates and
+     * optimistic writers detect that someone else changed the row since they read it.
+     */
+    @Version
+    private long version;
+
+    /**
+     * Number of {@link AccountStripe} rows holding part of the balance, 0 for a plain account.
+     * The balance of a striped account is this row's balance plus the sum of its stripes.
+     */
+    private int stripes;
+
+    /**
+     * Selects a locking mode from {@code balance.locking.classes}; {@code null} uses the global one.
+     */
+    private String accountClass;
 }
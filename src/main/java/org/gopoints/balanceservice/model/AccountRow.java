@@ -0,0 +1,17 @@
+package org.gopoints.balanceservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Read-only R2DBC view of a row in {@code accounts}. Balance changes go through {@link Account}
+ * and the JPA ledger code only.
+ */
+@Table("accounts")
+public record AccountRow(
+        @Id Long id,
+        Integer userId,
+        Money balance,
+        long version
+) {
+}
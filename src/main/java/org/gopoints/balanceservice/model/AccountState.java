@@ -0,0 +1,15 @@
+package org.gopoints.balanceservice.model;
+
+/**
+ * The columns of an account row that a mutation needs, read without a lock and without attaching
+ * an {@link Account} to the persistence context.
+ */
+public record AccountState(
+        Long id,
+        Integer userId,
+        Money balance,
+        long version,
+        int stripes,
+        String accountClass
+) {
+}
@@ -0,0 +1,48 @@
+package org.gopoints.balanceservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * One share of a striped account's balance. Stripes are numbered from 1; deposits pick one at
+ * random, so concurrent writers to a hot account spread over several rows instead of queueing on
+ * the account row.
+ */
+@Entity
+@Table(name = "account_stripes")
+@IdClass(AccountStripe.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountStripe {
+
+    @Id
+    private Long accountId;
+
+    @Id
+    private int stripe;
+
+    private Money balance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long accountId;
+        private int stripe;
+    }
+}
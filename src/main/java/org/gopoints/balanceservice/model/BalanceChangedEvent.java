@@ -0,0 +1,29 @@
+package org.gopoints.balanceservice.model;
+
+/**
+ * Published inside a ledger transaction for every account whose balance changed. When the
+ * mutation path does not read the row back, {@code balance} is {@code null} and only the
+ * account id is known. The same holds for striped accounts, whose row alone does not carry the
+ * balance.
+ */
+public record BalanceChangedEvent(
+        Long accountId,
+        Integer userId,
+        Money balance,
+        long version
+) {
+    public static BalanceChangedEvent of(Account account) {
+        if (account.getStripes() > 0) {
+            return unknown(account.getId());
+        }
+        return new BalanceChangedEvent(account.getId(), account.getUserId(), account.getBalance(), account.getVersion());
+    }
+
+    public static BalanceChangedEvent unknown(Long accountId) {
+        return new BalanceChangedEvent(accountId, null, null, -1);
+    }
+
+    public boolean isBalanceKnown() {
+        return balance != null;
+    }
+}
@@ -0,0 +1,41 @@
+package org.gopoints.balanceservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of an account's running balance: the balance after every {@link Posting} of the
+ * account up to and including {@code lastPostingId}, taken while the account was locked so that
+ * no posting below that id can still commit.
+ */
+@Entity
+@Table(name = "balance_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long accountId;
+
+    private Long lastPostingId;
+
+    private Money balance;
+
+    private LocalDateTime takenAt;
+}
@@ -0,0 +1,71 @@
+package org.gopoints.balanceservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Per-account, per-day totals of ledger activity and the balance at the end of the last change
+ * that day. Rows are accumulated in the same transaction as the balance change they describe.
+ * <p>
+ * Changes to a stripe of a striped account go to a row of their own ({@code stripe > 0}), so
+ * writers of different stripes do not queue on one rollup row; {@code stripe} 0 is the account row.
+ */
+@Entity
+@Table(name = "daily_balance_rollups")
+@IdClass(DailyBalanceRollup.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyBalanceRollup {
+
+    @Id
+    private Long accountId;
+
+    @Id
+    private LocalDate rollupDate;
+
+    @Id
+    private int stripe;
+
+    private Money depositTotal;
+
+    private long depositCount;
+
+    private Money withdrawTotal;
+
+    private long withdrawCount;
+
+    private Money transferOutTotal;
+
+    private long transferOutCount;
+
+    private Money transferInTotal;
+
+    private long transferInCount;
+
+    private Money closingBalance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long accountId;
+        private LocalDate rollupDate;
+        private int stripe;
+    }
+}
@@ -0,0 +1,35 @@
+package org.gopoints.balanceservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A client-supplied {@code Idempotency-Key} of a mutation that has committed, together with a
+ * fingerprint of the request it was used for.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+
+    @Id
+    private String idempotencyKey;
+
+    private String fingerprint;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime expiresAt;
+}
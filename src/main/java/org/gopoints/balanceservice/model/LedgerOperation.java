@@ -0,0 +1,24 @@
+package org.gopoints.balanceservice.model;
+
+/**
+ * A single ledger change. {@code targetAccountId} is the recipient of a {@link OperationType#TRANSFER}
+ * and is {@code null} for the other types.
+ */
+public record LedgerOperation(
+        OperationType type,
+        Long accountId,
+        Money amount,
+        Long targetAccountId
+) {
+    public static LedgerOperation deposit(Long accountId, Money amount) {
+        return new LedgerOperation(OperationType.DEPOSIT, accountId, amount, null);
+    }
+
+    public static LedgerOperation withdraw(Long accountId, Money amount) {
+        return new LedgerOperation(OperationType.WITHDRAW, accountId, amount, null);
+    }
+
+    public static LedgerOperation transfer(Long fromAccountId, Long toAccountId, Money amount) {
+        return new LedgerOperation(OperationType.TRANSFER, fromAccountId, amount, toAccountId);
+    }
+}
@@ -0,0 +1,23 @@
+package org.gopoints.balanceservice.model;
+
+/**
+ * Outcome of a single {@link LedgerOperation} applied as part of a batch: either the account
+ * balance right after the operation, or the error that rejected it.
+ */
+public record LedgerOperationResult(
+        LedgerOperation operation,
+        Money balance,
+        RuntimeException error
+) {
+    public static LedgerOperationResult success(LedgerOperation operation, Money balance) {
+        return new LedgerOperationResult(operation, balance, null);
+    }
+
+    public static LedgerOperationResult failure(LedgerOperation operation, RuntimeException error) {
+        return new LedgerOperationResult(operation, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,173 @@
+package org.gopoints.balanceservice.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amount of money in minor units (cents), matching the {@code DECIMAL(10,2)} columns. Arithmetic
+ * works on a single {@code long} and fails with {@link ArithmeticException} on overflow instead of
+ * wrapping around. Converted to and from {@link BigDecimal} only at the JDBC boundary, and written
+ * to JSON as a plain number with two decimals.
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public record Money(long cents) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    private static final long CENTS_PER_UNIT = 100;
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount has more than two decimals or does not fit
+     */
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofCents(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not a valid amount of money: " + amount, e);
+        }
+    }
+
+    /**
+     * Parses a decimal such as {@code 50}, {@code -3.5} or {@code 12.34} without going through
+     * {@link BigDecimal}. Also used by Spring to bind request parameters.
+     *
+     * @throws IllegalArgumentException if the text is not a number with at most two decimals
+     */
+    public static Money valueOf(String text) {
+        return valueOf(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Same as {@link #valueOf(String)} over a slice of a character buffer, so that a JSON parser
+     * can hand over its token text without copying it into a string first.
+     */
+    public static Money valueOf(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long units = 0;
+        int integerDigits = 0;
+        for (; i < end && chars[i] != '.'; i++, integerDigits++) {
+            units = accumulate(units, chars, i, offset, length);
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < end) {
+            for (i++; i < end; i++, fractionDigits++) {
+                if (fractionDigits == SCALE) {
+                    throw invalid(chars, offset, length);
+                }
+                fraction = accumulate(fraction, chars, i, offset, length);
+            }
+        }
+        if (integerDigits == 0 && fractionDigits == 0) {
+            throw invalid(chars, offset, length);
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        try {
+            // Sign applied before adding, so that Long.MIN_VALUE cents parses as well
+            return ofCents(negative
+                    ? Math.subtractExact(Math.multiplyExact(-units, CENTS_PER_UNIT), fraction)
+                    : Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), fraction));
+        } catch (ArithmeticException e) {
+            throw invalid(chars, offset, length);
+        }
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return cents < other.cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    /**
+     * Plain decimal with exactly two fraction digits, e.g. {@code 50.00} or {@code -0.05}.
+     */
+    @Override
+    public String toString() {
+        return new String(toChars());
+    }
+
+    /**
+     * {@link #toString()} as an exactly sized character array, for writers that accept one.
+     */
+    public char[] toChars() {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        int fraction = (int) Math.abs(cents % CENTS_PER_UNIT);
+        int length = (cents < 0 ? 1 : 0) + SCALE + 2;
+        for (long rest = units / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        char[] chars = new char[length];
+        int position = length;
+        chars[--position] = (char) ('0' + fraction % 10);
+        chars[--position] = (char) ('0' + fraction / 10);
+        chars[--position] = '.';
+        do {
+            chars[--position] = (char) ('0' + units % 10);
+            units /= 10;
+        } while (units != 0);
+        if (cents < 0) {
+            chars[0] = '-';
+        }
+        return chars;
+    }
+
+    private static long accumulate(long value, char[] chars, int index, int offset, int length) {
+        char c = chars[index];
+        if (c < '0' || c > '9') {
+            throw invalid(chars, offset, length);
+        }
+        try {
+            return Math.addExact(Math.multiplyExact(value, 10), c - '0');
+        } catch (ArithmeticException e) {
+            throw invalid(chars, offset, length);
+        }
+    }
+
+    private static IllegalArgumentException invalid(char[] chars, int offset, int length) {
+        return new IllegalArgumentException("Not a valid amount of money: " + new String(chars, offset, length));
+    }
+}
@@ -0,0 +1,7 @@
+package org.gopoints.balanceservice.model;
+
+public enum OperationType {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER
+}
@@ -0,0 +1,41 @@
+package org.gopoints.balanceservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One side of a journal entry: the signed change it makes to an account's balance. The postings
+ * of a {@link Transaction} always sum to zero. {@code accountId} is {@code null} for the side
+ * outside the service, i.e. the payer of a deposit or the payee of a withdrawal.
+ */
+@Entity
+@Table(name = "postings")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Posting {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long transactionId;
+
+    private Long accountId;
+
+    private Money amount;
+
+    private LocalDateTime postedAt;
+}
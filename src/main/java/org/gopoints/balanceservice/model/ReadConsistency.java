@@ -0,0 +1,31 @@
+package org.gopoints.balanceservice.model;
+
+import java.util.Locale;
+
+/**
+ * What a read may return when read-only transactions are served by a replica.
+ */
+public enum ReadConsistency {
+    /**
+     * Replica data, possibly behind by the replication lag.
+     */
+    EVENTUAL,
+    /**
+     * Primary data, including every committed write.
+     */
+    STRONG;
+
+    /**
+     * @param value {@code eventual} or {@code strong} in any case; {@code null} is {@link #EVENTUAL}
+     */
+    public static ReadConsistency parse(String value) {
+        if (value == null) {
+            return EVENTUAL;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown consistency: " + value);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.gopoints.balanceservice.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Change to one account's daily rollup caused by one or more ledger operations.
+ */
+public record RollupDelta(
+        Money depositTotal,
+        long depositCount,
+        Money withdrawTotal,
+        long withdrawCount,
+        Money transferOutTotal,
+        long transferOutCount,
+        Money transferInTotal,
+        long transferInCount
+) {
+
+    public static final RollupDelta EMPTY = new RollupDelta(Money.ZERO, 0, Money.ZERO, 0,
+            Money.ZERO, 0, Money.ZERO, 0);
+
+    /**
+     * Used by the JPQL aggregate queries, which sum the underlying {@code DECIMAL} columns.
+     */
+    public RollupDelta(BigDecimal depositTotal, Long depositCount, BigDecimal withdrawTotal, Long withdrawCount,
+                       BigDecimal transferOutTotal, Long transferOutCount, BigDecimal transferInTotal, Long transferInCount) {
+        this(Money.of(depositTotal), depositCount, Money.of(withdrawTotal), withdrawCount,
+                Money.of(transferOutTotal), transferOutCount, Money.of(transferInTotal), transferInCount);
+    }
+
+    public static RollupDelta deposit(Money amount) {
+        return new RollupDelta(amount, 1, Money.ZERO, 0, Money.ZERO, 0, Money.ZERO, 0);
+    }
+
+    public static RollupDelta withdraw(Money amount) {
+        return new RollupDelta(Money.ZERO, 0, amount, 1, Money.ZERO, 0, Money.ZERO, 0);
+    }
+
+    public static RollupDelta transferOut(Money amount) {
+        return new RollupDelta(Money.ZERO, 0, Money.ZERO, 0, amount, 1, Money.ZERO, 0);
+    }
+
+    public static RollupDelta transferIn(Money amount) {
+        return new RollupDelta(Money.ZERO, 0, Money.ZERO, 0, Money.ZERO, 0, amount, 1);
+    }
+
+    public RollupDelta plus(RollupDelta other) {
+        return new RollupDelta(
+                depositTotal.plus(other.depositTotal), depositCount + other.depositCount,
+                withdrawTotal.plus(other.withdrawTotal), withdrawCount + other.withdrawCount,
+                transferOutTotal.plus(other.transferOutTotal), transferOutCount + other.transferOutCount,
+                transferInTotal.plus(other.transferInTotal), transferInCount + other.transferInCount);
+    }
+
+    /**
+     * Effect on the balance: deposits and incoming transfers minus withdrawals and outgoing ones.
+     */
+    public Money net() {
+        return depositTotal.plus(transferInTotal).minus(withdrawTotal).minus(transferOutTotal);
+    }
+}
@@ -11,7 +11,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -29,7 +28,7 @@ public class Transaction {
 
     private Long accountId;
 
-    private BigDecimal amount;
+    private Money amount;
 
     private String operationType;
 
@@ -0,0 +1,19 @@
+package org.gopoints.balanceservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only R2DBC view of a row in {@code transactions}.
+ */
+@Table("transactions")
+public record TransactionRow(
+        @Id Long id,
+        Long accountId,
+        Money amount,
+        String operationType,
+        LocalDateTime timestamp
+) {
+}
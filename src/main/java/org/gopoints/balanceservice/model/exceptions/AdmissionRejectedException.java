@@ -0,0 +1,28 @@
+package org.gopoints.balanceservice.model.exceptions;
+
+import java.time.Duration;
+
+/**
+ * A ledger change turned away before reaching the database because too many are already in
+ * flight, for its account or overall. Safe to retry after {@link #getRetryAfter()}.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Whole seconds for the {@code Retry-After} header, at least one.
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
@@ -0,0 +1,7 @@
+package org.gopoints.balanceservice.model.exceptions;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
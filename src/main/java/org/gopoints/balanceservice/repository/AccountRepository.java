@@ -2,14 +2,73 @@ package org.gopoints.balanceservice.repository;
 
 import jakarta.persistence.LockModeType;
 import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountState;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.id = :accountId")
     Optional<Account> findByIdWithLock(Long accountId);
+
+    /**
+     * Locks all given accounts in one statement. Rows are locked in ascending id order so that
+     * concurrent callers locking overlapping sets cannot deadlock each other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :accountIds ORDER BY a.id")
+    List<Account> findAllByIdWithLock(Collection<Long> accountIds);
+
+    /**
+     * Stripe count read without locking the row; only a hint until the row is locked.
+     */
+    @Query("SELECT a.stripes FROM Account a WHERE a.id = :accountId")
+    Optional<Integer> findStripesById(Long accountId);
+
+    @Query("SELECT a.accountClass FROM Account a WHERE a.id = :accountId")
+    Optional<String> findAccountClassById(Long accountId);
+
+    /**
+     * Read of an optimistic writer: no lock, and no managed entity that a later locked read in
+     * the same transaction would be served from.
+     */
+    @Query("SELECT new org.gopoints.balanceservice.model.AccountState(a.id, a.userId, a.balance, a.version,"
+            + " a.stripes, a.accountClass) FROM Account a WHERE a.id = :accountId")
+    Optional<AccountState> findStateById(Long accountId);
+
+    /**
+     * The account balance including all of its stripes.
+     */
+    @Query(value = "SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s"
+            + " WHERE s.account_id = a.id), 0) FROM accounts a WHERE a.id = :accountId", nativeQuery = true)
+    Optional<BigDecimal> findTotalBalanceById(Long accountId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE accounts SET balance = balance + :amount, version = version + 1 WHERE id = :accountId", nativeQuery = true)
+    int incrementBalance(Long accountId, BigDecimal amount);
+
+    /**
+     * Debits the account only if it holds at least {@code amount}. Returns 0 both for an unknown
+     * account and for insufficient funds; callers tell them apart with {@link #findStripesById}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1"
+            + " WHERE id = :accountId AND balance >= :amount", nativeQuery = true)
+    int decrementBalanceIfSufficient(Long accountId, BigDecimal amount);
+
+    /**
+     * Writes the balance only if the row still has the version it was read with. Returns 0 when
+     * another transaction changed the row in between.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE accounts SET balance = :balance, version = version + 1"
+            + " WHERE id = :accountId AND version = :version", nativeQuery = true)
+    int updateBalanceIfVersion(Long accountId, BigDecimal balance, long version);
 }
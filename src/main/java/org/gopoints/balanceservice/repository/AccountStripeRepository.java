@@ -0,0 +1,36 @@
+package org.gopoints.balanceservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.gopoints.balanceservice.model.AccountStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, AccountStripe.Key> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountStripe s WHERE s.accountId = :accountId ORDER BY s.stripe")
+    List<AccountStripe> findAllByAccountIdWithLock(Long accountId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE account_stripes SET balance = balance + :amount"
+            + " WHERE account_id = :accountId AND stripe = :stripe", nativeQuery = true)
+    int incrementBalance(Long accountId, int stripe, BigDecimal amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE account_stripes SET balance = balance - :amount"
+            + " WHERE account_id = :accountId AND stripe = :stripe AND balance >= :amount", nativeQuery = true)
+    int decrementBalanceIfSufficient(Long accountId, int stripe, BigDecimal amount);
+
+    /**
+     * Stripes that held at least {@code amount} when the statement ran; takes no locks, so a
+     * stripe found here can still be drained before it is debited.
+     */
+    @Query(value = "SELECT stripe FROM account_stripes WHERE account_id = :accountId AND balance >= :amount",
+            nativeQuery = true)
+    List<Integer> findStripesHolding(Long accountId, BigDecimal amount);
+}
@@ -0,0 +1,27 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderByIdDesc(Long accountId);
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(Long accountId,
+                                                                                         LocalDateTime at);
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtAfterOrderByTakenAtAsc(Long accountId, LocalDateTime at);
+
+    /**
+     * Removes snapshots taken before {@code before}, except the latest one of each account.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM balance_snapshots WHERE taken_at < :before AND id NOT IN"
+            + " (SELECT MAX(id) FROM balance_snapshots GROUP BY account_id)", nativeQuery = true)
+    int deleteTakenBefore(LocalDateTime before);
+}
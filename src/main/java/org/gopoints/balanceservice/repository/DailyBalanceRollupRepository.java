@@ -0,0 +1,66 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.DailyBalanceRollup;
+import org.gopoints.balanceservice.model.RollupDelta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface DailyBalanceRollupRepository extends JpaRepository<DailyBalanceRollup, DailyBalanceRollup.Key> {
+
+    /**
+     * Adds the delta to an existing row and refreshes its closing balance from the account row
+     * and its stripes. Returns 0 when the account has no row for that day and stripe yet.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE daily_balance_rollups SET"
+            + " deposit_total = deposit_total + :#{#delta.depositTotal().toBigDecimal()},"
+            + " deposit_count = deposit_count + :#{#delta.depositCount()},"
+            + " withdraw_total = withdraw_total + :#{#delta.withdrawTotal().toBigDecimal()},"
+            + " withdraw_count = withdraw_count + :#{#delta.withdrawCount()},"
+            + " transfer_out_total = transfer_out_total + :#{#delta.transferOutTotal().toBigDecimal()},"
+            + " transfer_out_count = transfer_out_count + :#{#delta.transferOutCount()},"
+            + " transfer_in_total = transfer_in_total + :#{#delta.transferInTotal().toBigDecimal()},"
+            + " transfer_in_count = transfer_in_count + :#{#delta.transferInCount()},"
+            + " closing_balance = (SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s"
+            + " WHERE s.account_id = a.id), 0) FROM accounts a WHERE a.id = :accountId)"
+            + " WHERE account_id = :accountId AND rollup_date = :rollupDate AND stripe = :stripe", nativeQuery = true)
+    int accumulate(Long accountId, LocalDate rollupDate, int stripe, RollupDelta delta);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO daily_balance_rollups (account_id, rollup_date, stripe,"
+            + " deposit_total, deposit_count, withdraw_total, withdraw_count,"
+            + " transfer_out_total, transfer_out_count, transfer_in_total, transfer_in_count, closing_balance)"
+            + " SELECT a.id, :rollupDate, :stripe,"
+            + " :#{#delta.depositTotal().toBigDecimal()}, :#{#delta.depositCount()},"
+            + " :#{#delta.withdrawTotal().toBigDecimal()}, :#{#delta.withdrawCount()},"
+            + " :#{#delta.transferOutTotal().toBigDecimal()}, :#{#delta.transferOutCount()},"
+            + " :#{#delta.transferInTotal().toBigDecimal()}, :#{#delta.transferInCount()},"
+            + " a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s WHERE s.account_id = a.id), 0)"
+            + " FROM accounts a WHERE a.id = :accountId", nativeQuery = true)
+    int insert(Long accountId, LocalDate rollupDate, int stripe, RollupDelta delta);
+
+    @Query("SELECT new org.gopoints.balanceservice.model.RollupDelta("
+            + " COALESCE(SUM(r.depositTotal), 0), COALESCE(SUM(r.depositCount), 0),"
+            + " COALESCE(SUM(r.withdrawTotal), 0), COALESCE(SUM(r.withdrawCount), 0),"
+            + " COALESCE(SUM(r.transferOutTotal), 0), COALESCE(SUM(r.transferOutCount), 0),"
+            + " COALESCE(SUM(r.transferInTotal), 0), COALESCE(SUM(r.transferInCount), 0))"
+            + " FROM DailyBalanceRollup r"
+            + " WHERE r.accountId = :accountId AND r.rollupDate BETWEEN :startDate AND :endDate")
+    RollupDelta sumBetween(Long accountId, LocalDate startDate, LocalDate endDate);
+
+    @Query("SELECT new org.gopoints.balanceservice.model.RollupDelta("
+            + " COALESCE(SUM(r.depositTotal), 0), COALESCE(SUM(r.depositCount), 0),"
+            + " COALESCE(SUM(r.withdrawTotal), 0), COALESCE(SUM(r.withdrawCount), 0),"
+            + " COALESCE(SUM(r.transferOutTotal), 0), COALESCE(SUM(r.transferOutCount), 0),"
+            + " COALESCE(SUM(r.transferInTotal), 0), COALESCE(SUM(r.transferInCount), 0))"
+            + " FROM DailyBalanceRollup r"
+            + " WHERE r.accountId = :accountId AND r.rollupDate > :date")
+    RollupDelta sumAfter(Long accountId, LocalDate date);
+
+    Optional<DailyBalanceRollup> findFirstByAccountIdAndRollupDateLessThanEqualOrderByRollupDateDescStripeDesc(
+            Long accountId, LocalDate date);
+}
@@ -0,0 +1,31 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * Plain insert, so a key that already exists fails right away with a unique violation instead
+     * of being merged at flush time.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at, expires_at)"
+            + " VALUES (:idempotencyKey, :fingerprint, :createdAt, :expiresAt)", nativeQuery = true)
+    void insert(String idempotencyKey, String fingerprint, LocalDateTime createdAt, LocalDateTime expiresAt);
+
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE idempotency_key = :idempotencyKey AND expires_at < :now",
+            nativeQuery = true)
+    int deleteIfExpired(String idempotencyKey, LocalDateTime now);
+
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE idempotency_key IN"
+            + " (SELECT idempotency_key FROM idempotency_keys WHERE expires_at < :now LIMIT :batchSize)",
+            nativeQuery = true)
+    int deleteExpired(LocalDateTime now, int batchSize);
+}
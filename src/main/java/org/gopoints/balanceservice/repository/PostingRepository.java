@@ -0,0 +1,54 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.Posting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface PostingRepository extends JpaRepository<Posting, Long>, PostingRepositoryCustom {
+
+    List<Posting> findByAccountIdAndPostedAtBetweenOrderById(Long accountId, LocalDateTime startDate,
+                                                             LocalDateTime endDate);
+
+    long countByAccountIdAndIdGreaterThan(Long accountId, Long afterId);
+
+    @Query(value = "SELECT MAX(id) FROM postings WHERE account_id = :accountId", nativeQuery = true)
+    Long findLastIdByAccountId(Long accountId);
+
+    @Query(value = "SELECT MAX(id) FROM postings", nativeQuery = true)
+    Long findLastId();
+
+    /**
+     * Accounts with postings in the id range {@code (afterId, upToId]}.
+     */
+    @Query(value = "SELECT DISTINCT account_id FROM postings"
+            + " WHERE id > :afterId AND id <= :upToId AND account_id IS NOT NULL", nativeQuery = true)
+    List<Long> findAccountIdsPostedBetween(Long afterId, Long upToId);
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM postings WHERE account_id = :accountId AND id > :afterId",
+            nativeQuery = true)
+    BigDecimal sumAfter(Long accountId, Long afterId);
+
+    /**
+     * Postings after the snapshot posting {@code afterId} that were made up to {@code at}: rolls a
+     * snapshot forward to a later time.
+     */
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM postings"
+            + " WHERE account_id = :accountId AND id > :afterId AND posted_at <= :at", nativeQuery = true)
+    BigDecimal sumAfterPostedUpTo(Long accountId, Long afterId, LocalDateTime at);
+
+    /**
+     * Postings up to the snapshot posting {@code upToId} that were made after {@code at}: rolls a
+     * snapshot back to an earlier time.
+     */
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM postings"
+            + " WHERE account_id = :accountId AND id <= :upToId AND posted_at > :at", nativeQuery = true)
+    BigDecimal sumUpToPostedAfter(Long accountId, Long upToId, LocalDateTime at);
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM postings WHERE account_id = :accountId AND posted_at > :at",
+            nativeQuery = true)
+    BigDecimal sumPostedAfter(Long accountId, LocalDateTime at);
+}
@@ -0,0 +1,13 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.Posting;
+
+import java.util.List;
+
+public interface PostingRepositoryCustom {
+
+    /**
+     * Inserts all rows with a single JDBC batch. Generated ids are not read back.
+     */
+    void batchInsert(List<Posting> postings);
+}
@@ -0,0 +1,35 @@
+package org.gopoints.balanceservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.model.Posting;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class PostingRepositoryCustomImpl implements PostingRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO postings (transaction_id, account_id, amount, posted_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void batchInsert(List<Posting> postings) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, postings, postings.size(), (ps, posting) -> {
+            ps.setLong(1, posting.getTransactionId());
+            if (posting.getAccountId() == null) {
+                ps.setNull(2, Types.BIGINT);
+            } else {
+                ps.setLong(2, posting.getAccountId());
+            }
+            ps.setBigDecimal(3, posting.getAmount().toBigDecimal());
+            ps.setTimestamp(4, Timestamp.valueOf(posting.getPostedAt()));
+        });
+    }
+}
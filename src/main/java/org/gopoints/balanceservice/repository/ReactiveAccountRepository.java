@@ -0,0 +1,16 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.AccountRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveAccountRepository extends R2dbcRepository<AccountRow, Long> {
+
+    /**
+     * The account with its whole balance, including the stripes of a striped account.
+     */
+    @Query("SELECT a.id, a.user_id, a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripes s"
+            + " WHERE s.account_id = a.id), 0) AS balance, a.version FROM accounts a WHERE a.id = :accountId")
+    Mono<AccountRow> findWithTotalBalance(Long accountId);
+}
@@ -0,0 +1,20 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.TransactionRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+public interface ReactiveTransactionRepository extends R2dbcRepository<TransactionRow, Long> {
+
+    /**
+     * The period in {@code (timestamp, id)} order. Rows are fetched as the subscriber requests
+     * them, so a slow client holds back the database cursor instead of buffering the period.
+     */
+    @Query("SELECT * FROM transactions WHERE account_id = :accountId"
+            + " AND timestamp BETWEEN :startDate AND :endDate"
+            + " ORDER BY timestamp, id")
+    Flux<TransactionRow> streamByPeriod(Long accountId, LocalDateTime startDate, LocalDateTime endDate);
+}
@@ -1,12 +1,29 @@
 package org.gopoints.balanceservice.repository;
 
 import org.gopoints.balanceservice.model.Transaction;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
     List<Transaction> findByAccountIdAndTimestampBetween(Long accountId, LocalDateTime startDate, LocalDateTime endDate);
 
+    @Query("SELECT t FROM Transaction t WHERE t.accountId = :accountId"
+            + " AND t.timestamp BETWEEN :startDate AND :endDate"
+            + " ORDER BY t.timestamp, t.id")
+    List<Transaction> findFirstPage(Long accountId, LocalDateTime startDate, LocalDateTime endDate, Limit limit);
+
+    /**
+     * Next page after the keyset {@code (afterTimestamp, afterId)}; {@code id} breaks ties between
+     * rows written with the same timestamp.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.accountId = :accountId"
+            + " AND (t.timestamp > :afterTimestamp OR (t.timestamp = :afterTimestamp AND t.id > :afterId))"
+            + " AND t.timestamp <= :endDate"
+            + " ORDER BY t.timestamp, t.id")
+    List<Transaction> findPageAfter(Long accountId, LocalDateTime afterTimestamp, Long afterId,
+                                    LocalDateTime endDate, Limit limit);
 }
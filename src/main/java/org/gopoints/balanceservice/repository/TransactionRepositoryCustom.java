@@ -0,0 +1,24 @@
+package org.gopoints.balanceservice.repository;
+
+import org.gopoints.balanceservice.model.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Inserts all rows with a single JDBC batch and sets the generated ids on the passed
+     * entities.
+     */
+    void batchInsert(List<Transaction> transactions);
+
+    /**
+     * Reads the period through a forward-only cursor with a bounded fetch size and hands each row
+     * to {@code consumer} as soon as it is read; rows are not collected or attached to the
+     * persistence context. Must run inside a transaction so the driver can keep the cursor open.
+     */
+    void streamByAccountIdAndTimestampBetween(Long accountId, LocalDateTime startDate, LocalDateTime endDate,
+                                              int fetchSize, Consumer<Transaction> consumer);
+}
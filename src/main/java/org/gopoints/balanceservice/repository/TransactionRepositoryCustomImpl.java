@@ -0,0 +1,81 @@
+package org.gopoints.balanceservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.Transaction;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO transactions (account_id, amount, operation_type, timestamp) VALUES (?, ?, ?, ?)";
+
+    private static final String STREAM_SQL =
+            "SELECT id, account_id, amount, operation_type, timestamp FROM transactions"
+                    + " WHERE account_id = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void batchInsert(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaction transaction = transactions.get(i);
+                        ps.setLong(1, transaction.getAccountId());
+                        ps.setBigDecimal(2, transaction.getAmount().toBigDecimal());
+                        ps.setString(3, transaction.getOperationType());
+                        ps.setTimestamp(4, Timestamp.valueOf(transaction.getTimestamp()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transactions.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    @Override
+    public void streamByAccountIdAndTimestampBetween(Long accountId, LocalDateTime startDate, LocalDateTime endDate,
+                                                     int fetchSize, Consumer<Transaction> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(STREAM_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, accountId);
+            ps.setTimestamp(2, Timestamp.valueOf(startDate));
+            ps.setTimestamp(3, Timestamp.valueOf(endDate));
+            return ps;
+        }, rs -> {
+            consumer.accept(Transaction.builder()
+                    .id(rs.getLong("id"))
+                    .accountId(rs.getLong("account_id"))
+                    .amount(Money.of(rs.getBigDecimal("amount")))
+                    .operationType(rs.getString("operation_type"))
+                    .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package org.gopoints.balanceservice.service;
+
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sheds ledger changes before they reach the database when {@code balance.admission.enabled} is
+ * set. Two limits apply: a fixed number of changes per account in flight, since more would only
+ * wait on the account's row lock while holding a connection, and a global limit that follows
+ * latency (additive increase, multiplicative decrease), so the service backs off as the database
+ * slows down instead of queueing requests until they time out. A change that does not fit gets
+ * an {@link AdmissionRejectedException}, answered with 429 and {@code Retry-After}.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Permit NOOP = new Permit(null, new Long[0]);
+
+    private final BalanceProperties.Admission properties;
+    private final BalanceMetrics balanceMetrics;
+    private final Map<Long, Integer> inFlightByAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * Raw bits of the current global limit; a double so that additive increase can add fractions.
+     */
+    private final AtomicLong limitBits;
+    /**
+     * {@link System#nanoTime()} of the last multiplicative decrease. Changes that were already
+     * running then saw the same congestion, so their slow completions do not decrease again.
+     */
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+    private final long latencyTargetNanos;
+
+    public AdmissionControl(BalanceProperties balanceProperties, BalanceMetrics balanceMetrics) {
+        this.properties = balanceProperties.getAdmission();
+        this.balanceMetrics = balanceMetrics;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(properties.getInitialLimit()));
+        this.latencyTargetNanos = properties.getLatencyTarget().toNanos();
+        balanceMetrics.admissionGauges(this::limit, inFlight::get);
+    }
+
+    /**
+     * Admits a change of the given accounts or throws {@link AdmissionRejectedException}. The
+     * returned permit must be closed when the change is done; its duration feeds the global limit.
+     */
+    public Permit acquire(Long... accountIds) {
+        if (!properties.isEnabled()) {
+            return NOOP;
+        }
+        if (accountIds.length > 1) {
+            accountIds = Arrays.stream(accountIds).distinct().toArray(Long[]::new);
+        }
+        if (!acquireGlobal()) {
+            throw reject("global", "Too many balance changes in flight");
+        }
+        for (int i = 0; i < accountIds.length; i++) {
+            if (!acquireAccount(accountIds[i])) {
+                for (int j = 0; j < i; j++) {
+                    releaseAccount(accountIds[j]);
+                }
+                inFlight.decrementAndGet();
+                throw reject("account", "Too many balance changes in flight for account " + accountIds[i]);
+            }
+        }
+        balanceMetrics.admission("admitted", "none").increment();
+        return new Permit(this, accountIds);
+    }
+
+    public double limit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private boolean acquireGlobal() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean acquireAccount(Long accountId) {
+        boolean[] admitted = new boolean[1];
+        inFlightByAccount.compute(accountId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= properties.getPerAccountLimit()) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        return admitted[0];
+    }
+
+    private void releaseAccount(Long accountId) {
+        inFlightByAccount.computeIfPresent(accountId, (id, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private void release(Long[] accountIds, long startedAt, long finishedAt) {
+        for (Long accountId : accountIds) {
+            releaseAccount(accountId);
+        }
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (finishedAt - startedAt > latencyTargetNanos) {
+            decreaseLimit(startedAt, finishedAt);
+        } else {
+            increaseLimit(inFlightBefore);
+        }
+    }
+
+    private void decreaseLimit(long startedAt, long finishedAt) {
+        long lastDecrease = lastDecreaseNanos.get();
+        if (startedAt - lastDecrease <= 0 || !lastDecreaseNanos.compareAndSet(lastDecrease, finishedAt)) {
+            return;
+        }
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private void increaseLimit(int inFlightBefore) {
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            // grow only while the limit is actually in use, otherwise it drifts up when idle
+            if (inFlightBefore * 2 < limit) {
+                return;
+            }
+            double next = Math.min(properties.getMaxLimit(), limit + 1 / limit);
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private AdmissionRejectedException reject(String reason, String message) {
+        balanceMetrics.admission("rejected", reason).increment();
+        return new AdmissionRejectedException(message, properties.getRetryAfter());
+    }
+
+    public static final class Permit implements AutoCloseable {
+
+        private final AdmissionControl admissionControl;
+        private final Long[] accountIds;
+        private final long startedAt = System.nanoTime();
+        private boolean closed;
+
+        private Permit(AdmissionControl admissionControl, Long[] accountIds) {
+            this.admissionControl = admissionControl;
+            this.accountIds = accountIds;
+        }
+
+        @Override
+        public void close() {
+            if (admissionControl == null || closed) {
+                return;
+            }
+            closed = true;
+            admissionControl.release(accountIds, startedAt, System.nanoTime());
+        }
+    }
+}
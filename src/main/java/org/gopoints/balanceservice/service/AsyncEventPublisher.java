@@ -0,0 +1,158 @@
+package org.gopoints.balanceservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.BalanceProperties.PublishMode;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes committed events in {@code after_commit} mode. Committing threads put their events
+ * into a bounded queue and return; a single publisher thread collects what arrives within the
+ * configured window (or until the batch is full) and sends it on one channel with publisher
+ * confirms. When the queue is full a committing thread waits up to
+ * {@code balance.async-events.offer-timeout}, which slows producers down to the broker's pace,
+ * and drops the event after that. Delivery is at-most-once: events of a failed batch and those
+ * still queued at shutdown are counted as dropped.
+ */
+@Service
+@Slf4j
+public class AsyncEventPublisher {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final RabbitMQService rabbitMqService;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties balanceProperties;
+    private final BalanceProperties.AsyncEvents properties;
+    private final BlockingQueue<PendingEvent> queue;
+
+    private volatile boolean running;
+    private Thread publisher;
+
+    public AsyncEventPublisher(RabbitMQService rabbitMqService,
+                               BalanceMetrics balanceMetrics,
+                               BalanceProperties balanceProperties) {
+        this.rabbitMqService = rabbitMqService;
+        this.balanceMetrics = balanceMetrics;
+        this.balanceProperties = balanceProperties;
+        this.properties = balanceProperties.getAsyncEvents();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        balanceMetrics.eventQueueGauge(queue::size);
+    }
+
+    @PostConstruct
+    void start() {
+        if (balanceProperties.getEvents().getMode() != PublishMode.AFTER_COMMIT) {
+            return;
+        }
+        running = true;
+        publisher = new Thread(this::runPublisher, "after-commit-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        log.info("After-commit publishing enabled: window={}, maxBatchSize={}, queueCapacity={}",
+                properties.getWindow(), properties.getMaxBatchSize(), properties.getQueueCapacity());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (publisher == null) {
+            return;
+        }
+        running = false;
+        publisher.join(TimeUnit.SECONDS.toMillis(5));
+        int leftovers = queue.size();
+        queue.clear();
+        if (leftovers > 0) {
+            log.warn("Dropping {} unpublished events on shutdown", leftovers);
+            balanceMetrics.eventsDropped("shutdown").increment(leftovers);
+        }
+    }
+
+    /**
+     * Queues the events of one committed transaction, waiting for space if the queue is full.
+     */
+    public void submit(List<RabbitMessage> messages) {
+        long committedAt = System.nanoTime();
+        for (RabbitMessage message : messages) {
+            PendingEvent event = new PendingEvent(message, committedAt);
+            if (!running) {
+                balanceMetrics.eventsDropped("shutdown").increment();
+            } else if (!queue.offer(event) && !offerWithBackpressure(event)) {
+                log.warn("After-commit event queue is full, dropping event for account {}", message.getAccountId());
+                balanceMetrics.eventsDropped("queue_full").increment();
+            }
+        }
+    }
+
+    private boolean offerWithBackpressure(PendingEvent event) {
+        long start = System.nanoTime();
+        try {
+            return queue.offer(event, properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            balanceMetrics.eventBackpressure().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void runPublisher() {
+        List<PendingEvent> batch = new ArrayList<>(properties.getMaxBatchSize());
+        // keeps draining after stop() until the queue is empty or the join times out
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + properties.getWindow().toNanos();
+                while (batch.size() < properties.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(List<PendingEvent> batch) {
+        balanceMetrics.eventBatchSize().record(batch.size());
+        try {
+            balanceMetrics.recordPublish("after_commit", () -> rabbitMqService.sendBatch(
+                    batch.stream().map(PendingEvent::message).toList(), properties.getConfirmTimeout()));
+        } catch (RuntimeException e) {
+            log.error("Publishing {} events after commit failed, dropping them", batch.size(), e);
+            balanceMetrics.eventsDropped("publish_failed").increment(batch.size());
+            return;
+        }
+        long now = System.nanoTime();
+        for (PendingEvent event : batch) {
+            balanceMetrics.eventPublishDelay().record(now - event.committedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record PendingEvent(RabbitMessage message, long committedAt) {
+    }
+}
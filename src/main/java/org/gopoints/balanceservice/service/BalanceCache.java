@@ -0,0 +1,98 @@
+package org.gopoints.balanceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.mapper.BalanceMapper;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through cache of account balances.
+ * <p>
+ * Misses are loaded outside of the cache: Caffeine's atomic {@code get} runs the loader inside a
+ * {@code ConcurrentHashMap} bin lock, which would pin a virtual thread's carrier for the whole
+ * database round trip. To keep a concurrent invalidation from being overwritten by the value read
+ * before it, every invalidation bumps a generation counter of the key's slot and a load is only
+ * cached if that generation did not move while it ran; both happen under the entry's map lock,
+ * which is only held for the swap itself. Committed changes are merged by account version: an
+ * update that arrives after a newer one (after-commit hooks of two transactions can run in either
+ * order) is ignored. Changes whose resulting balance is unknown, which includes every change to a
+ * striped account, leave an invalidated entry behind rather than none: their version is unknown
+ * too, so a later update could be older than them, and only a load, which reads the current
+ * version, may fill the entry again.
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceCache {
+
+    public static final String CACHE_NAME = "balance";
+
+    /**
+     * Keys sharing a slot only cost each other a cache fill, so a constantly invalidated hot
+     * account does not keep every other account from being cached.
+     */
+    private static final int INVALIDATION_SLOTS = 1024;
+
+    private final Cache<Long, CachedBalance> balanceCaffeineCache;
+    private final BalanceService balanceService;
+    private final BalanceMapper balanceMapper;
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_SLOTS);
+
+    public AccountDto get(Long accountId) {
+        CachedBalance cached = balanceCaffeineCache.getIfPresent(accountId);
+        if (cached != null && !cached.isInvalidated()) {
+            return cached.account();
+        }
+        int slot = slot(accountId);
+        long generation = invalidations.get(slot);
+        CachedBalance loaded = load(accountId);
+        balanceCaffeineCache.asMap().compute(accountId, (id, current) -> {
+            if (invalidations.get(slot) != generation) {
+                return current;
+            }
+            return current == null || current.isInvalidated() || loaded.version() > current.version()
+                    ? loaded : current;
+        });
+        return loaded.account();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        if (!event.isBalanceKnown()) {
+            balanceCaffeineCache.asMap().compute(event.accountId(), (id, current) -> {
+                invalidations.incrementAndGet(slot(id));
+                return CachedBalance.INVALIDATED;
+            });
+            return;
+        }
+        CachedBalance update = new CachedBalance(
+                new AccountDto(event.accountId(), event.userId(), event.balance()), event.version());
+        balanceCaffeineCache.asMap().merge(event.accountId(), update,
+                (current, candidate) -> !current.isInvalidated() && candidate.version() > current.version()
+                        ? candidate : current);
+    }
+
+    private static int slot(Long accountId) {
+        return Long.hashCode(accountId) & (INVALIDATION_SLOTS - 1);
+    }
+
+    private CachedBalance load(Long accountId) {
+        Account account = balanceService.getAccount(accountId);
+        return new CachedBalance(balanceMapper.accountToDto(account), account.getVersion());
+    }
+
+    public record CachedBalance(AccountDto account, long version) {
+
+        static final CachedBalance INVALIDATED = new CachedBalance(null, -1);
+
+        boolean isInvalidated() {
+            return account == null;
+        }
+    }
+}
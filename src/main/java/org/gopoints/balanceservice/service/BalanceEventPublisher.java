@@ -0,0 +1,64 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single entry point for the events produced by ledger mutations; hands them to the broker
+ * according to {@code balance.events.mode}. In {@code AFTER_COMMIT} mode the events of a
+ * transaction are collected by a {@link TransactionSynchronization} and passed to the
+ * {@link AsyncEventPublisher} only once it has committed, so a rolled-back (or retried) attempt
+ * publishes nothing.
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceEventPublisher {
+
+    private final RabbitMQService rabbitMqService;
+    private final OutboxService outboxService;
+    private final BalanceProperties balanceProperties;
+    private final BalanceMetrics balanceMetrics;
+    private final AsyncEventPublisher asyncEventPublisher;
+
+    public void publish(RabbitMessage message) {
+        switch (balanceProperties.getEvents().getMode()) {
+            case DIRECT -> balanceMetrics.recordPublish("direct", () -> rabbitMqService.sendMessage(message));
+            case OUTBOX -> outboxService.enqueue(message);
+            case AFTER_COMMIT -> publishAfterCommit(message);
+        }
+    }
+
+    private void publishAfterCommit(RabbitMessage message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            asyncEventPublisher.submit(List.of(message));
+            return;
+        }
+        // the synchronization list is suspended along with its transaction, unlike a bound resource
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingEvents pending) {
+                pending.messages.add(message);
+                return;
+            }
+        }
+        PendingEvents pending = new PendingEvents();
+        pending.messages.add(message);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    private class PendingEvents implements TransactionSynchronization {
+
+        private final List<RabbitMessage> messages = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            asyncEventPublisher.submit(messages);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.model.exceptions.IdempotencyKeyReusedException;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Central place for the meters of the balance service, so meter names and tags stay the same
+ * regardless of which code path records them.
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceMetrics {
+
+    public static final String PATH_DIRECT = "direct";
+    public static final String PATH_GROUP_COMMIT = "group-commit";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_INSUFFICIENT_FUNDS = "insufficient_funds";
+    public static final String OUTCOME_NOT_FOUND = "not_found";
+    public static final String OUTCOME_INVALID = "invalid";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordOperation(String type, String path, Runnable operation) {
+        recordOperation(type, path, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times a balance mutation under its outcome. Rejections for missing funds or a missing
+     * account are also counted on their own, so their rates can be alerted on directly.
+     */
+    public <T> T recordOperation(String type, String path, Supplier<T> operation) {
+        try {
+            return timed(operation, outcome -> operationTimer(type, path, outcome));
+        } catch (RuntimeException e) {
+            countRejection(type, e);
+            throw e;
+        }
+    }
+
+    public Timer operationTimer(String type, String path, String outcome) {
+        return Timer.builder("balance.operation")
+                .description("End-to-end latency of a balance mutation, including commit")
+                .tag("type", type)
+                .tag("path", path)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts {@code error} if it is a business rejection; other failures are ignored here.
+     */
+    public void countRejection(String type, Throwable error) {
+        String outcome = outcome(error);
+        if (OUTCOME_INSUFFICIENT_FUNDS.equals(outcome) || OUTCOME_NOT_FOUND.equals(outcome)) {
+            Counter.builder("balance.operation.rejections")
+                    .description("Balance mutations rejected because of missing funds or a missing account")
+                    .tag("type", type)
+                    .tag("reason", outcome)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    public static String outcome(Throwable error) {
+        return switch (error) {
+            case InsufficientFundsException e -> OUTCOME_INSUFFICIENT_FUNDS;
+            case AccountNotFoundException e -> OUTCOME_NOT_FOUND;
+            case IllegalArgumentException e -> OUTCOME_INVALID;
+            case IdempotencyKeyReusedException e -> OUTCOME_INVALID;
+            default -> OUTCOME_ERROR;
+        };
+    }
+
+    public DistributionSummary groupCommitBatchSize() {
+        return DistributionSummary.builder("balance.group-commit.batch.size")
+                .description("Number of operations committed together by the group-commit flusher")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts measuring how long the current transaction keeps an account row locked. Call it
+     * right after the lock is acquired; the time is recorded when the transaction completes.
+     */
+    public void trackLockHold(String locking) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        long start = System.nanoTime();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lockHoldTimer(locking).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public Timer lockHoldTimer(String locking) {
+        return Timer.builder("balance.lock.hold")
+                .description("Time an account row stays locked, from acquisition to transaction end")
+                .tag("locking", locking)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the statement that acquires account row locks and records its duration, which is
+     * mostly time spent waiting while another transaction holds one of the rows.
+     */
+    public <T> T timeLockAcquisition(String locking, Supplier<T> acquire) {
+        return lockWaitTimer(locking).record(acquire);
+    }
+
+    public Timer lockWaitTimer(String locking) {
+        return Timer.builder("balance.lock.wait")
+                .description("Time spent acquiring account row locks, including waiting for other transactions")
+                .tag("locking", locking)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public Counter transactionRetries(String operation, String cause) {
+        return Counter.builder("balance.tx.retries")
+                .description("Transactions retried after a deadlock or lock failure")
+                .tag("operation", operation)
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts optimistic writes that found the row changed since it was read; each one costs a
+     * retry of the whole transaction.
+     */
+    public Counter optimisticConflicts(String accountClass) {
+        return Counter.builder("balance.optimistic.conflicts")
+                .description("Optimistic balance writes rejected because the account row version had changed")
+                .tag("account_class", accountClass == null ? "default" : accountClass)
+                .register(meterRegistry);
+    }
+
+    public Counter ledgerMismatches() {
+        return Counter.builder("balance.ledger.mismatches")
+                .description("Snapshots where the stored balance differed from the one rebuilt from postings")
+                .register(meterRegistry);
+    }
+
+    public Counter transactionRetriesExhausted(String operation) {
+        return Counter.builder("balance.tx.retries.exhausted")
+                .description("Transactions that still failed after the last retry attempt")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Times handing events to RabbitMQ: one message in {@code direct} mode, a confirmed batch in
+     * {@code outbox} and {@code after_commit} mode.
+     */
+    public void recordPublish(String mode, Runnable publish) {
+        timed(() -> {
+            publish.run();
+            return null;
+        }, outcome -> Timer.builder("balance.rabbit.publish")
+                .description("Time to publish balance events to RabbitMQ, including publisher confirms")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * Time from the commit of the transaction that produced an event until the broker confirmed it.
+     */
+    public Timer eventPublishDelay() {
+        return Timer.builder("balance.events.publish.delay")
+                .description("Time from commit until the broker confirmed an event published after commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Time committing threads were held back because the after-commit publisher queue was full.
+     */
+    public Timer eventBackpressure() {
+        return Timer.builder("balance.events.backpressure")
+                .description("Time a committing thread waited for space in the after-commit publisher queue")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param reason {@code queue_full}, {@code publish_failed} or {@code shutdown}
+     */
+    public Counter eventsDropped(String reason) {
+        return Counter.builder("balance.events.dropped")
+                .description("Committed events that were never published")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public DistributionSummary eventBatchSize() {
+        return DistributionSummary.builder("balance.events.batch.size")
+                .description("Number of events the after-commit publisher sends in one broker write")
+                .register(meterRegistry);
+    }
+
+    public void eventQueueGauge(Supplier<Number> size) {
+        Gauge.builder("balance.events.queue.size", size)
+                .description("Events waiting for the after-commit publisher")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param outcome {@code admitted} or {@code rejected}
+     * @param reason  {@code none} for admitted requests, otherwise the limit that was hit:
+     *                {@code account} or {@code global}
+     */
+    public Counter admission(String outcome, String reason) {
+        return Counter.builder("balance.admission.requests")
+                .description("Ledger changes admitted or turned away by admission control")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public void admissionGauges(Supplier<Number> limit, Supplier<Number> inFlight) {
+        Gauge.builder("balance.admission.limit", limit)
+                .description("Current adaptive limit of ledger changes in flight")
+                .register(meterRegistry);
+        Gauge.builder("balance.admission.inflight", inFlight)
+                .description("Ledger changes currently admitted and not yet finished")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param reason the failed {@link reactor.core.publisher.Sinks.EmitResult}, e.g. {@code fail_overflow}
+     */
+    public Counter streamDropped(String reason) {
+        return Counter.builder("balance.stream.dropped")
+                .description("Committed balance changes that could not be handed to their account's stream")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public void streamSubscribersGauge(Supplier<Number> subscribers) {
+        Gauge.builder("balance.stream.subscribers", subscribers)
+                .description("Open balance change streams")
+                .register(meterRegistry);
+    }
+
+    public void recordListenerProcessing(String mode, Runnable processing) {
+        timed(() -> {
+            processing.run();
+            return null;
+        }, outcome -> Timer.builder("balance.listener.processing")
+                .description("Time the balanceQueue listener spends processing one delivery")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public Counter listenerMessages(String mode) {
+        return Counter.builder("balance.listener.messages")
+                .description("Messages from balanceQueue processed by the listener")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    public DistributionSummary listenerBatchSize() {
+        return DistributionSummary.builder("balance.listener.batch.size")
+                .description("Number of messages delivered to the batch listener at once")
+                .register(meterRegistry);
+    }
+
+    public Timer listenerLag() {
+        return Timer.builder("balance.listener.lag")
+                .description("Time between publishing a message and the listener starting to process it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void queueDepthGauge(String queue, Supplier<Number> depth) {
+        Gauge.builder("balance.queue.depth", depth)
+                .description("Messages ready in the queue, as last reported by the broker")
+                .tag("queue", queue)
+                .register(meterRegistry);
+    }
+
+    public Counter idempotentReplays(String source) {
+        return Counter.builder("balance.idempotency.replays")
+                .description("Retried requests answered from a stored idempotency key instead of being executed")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private <T> T timed(Supplier<T> action, Function<String, Timer> timerForOutcome) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = action.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            timerForOutcome.apply(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes balanceQueue either one message per delivery or, with
+ * {@code balance.listener.batch-enabled=true}, in batches. Only one of the two listeners is
+ * started. Also tracks consumer lag: per-message queue time and the queue depth reported by
+ * the broker.
+ */
+@Component
+@Slf4j
+public class BalanceQueueListener {
+
+    private static final String QUEUE_NAME = "balanceQueue";
+
+    private final RabbitMQService rabbitMqService;
+    private final BalanceMetrics balanceMetrics;
+    private final AmqpAdmin amqpAdmin;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    public BalanceQueueListener(RabbitMQService rabbitMqService, BalanceMetrics balanceMetrics, AmqpAdmin amqpAdmin) {
+        this.rabbitMqService = rabbitMqService;
+        this.balanceMetrics = balanceMetrics;
+        this.amqpAdmin = amqpAdmin;
+        balanceMetrics.queueDepthGauge(QUEUE_NAME, queueDepth::get);
+    }
+
+    @RabbitListener(id = "balanceQueueListener", queues = QUEUE_NAME,
+            autoStartup = "#{!${balance.listener.batch-enabled:false}}")
+    public void process(@Payload Message<RabbitMessage> message) {
+        recordLag(message);
+        balanceMetrics.recordListenerProcessing("single", () -> rabbitMqService.process(message.getPayload()));
+        balanceMetrics.listenerMessages("single").increment();
+    }
+
+    @RabbitListener(id = "balanceQueueBatchListener", queues = QUEUE_NAME,
+            containerFactory = "batchListenerContainerFactory",
+            autoStartup = "${balance.listener.batch-enabled:false}")
+    public void processBatch(List<Message<RabbitMessage>> messages) {
+        messages.forEach(this::recordLag);
+        balanceMetrics.recordListenerProcessing("batch",
+                () -> rabbitMqService.processBatch(messages.stream().map(Message::getPayload).toList()));
+        balanceMetrics.listenerBatchSize().record(messages.size());
+        balanceMetrics.listenerMessages("batch").increment(messages.size());
+    }
+
+    @Scheduled(fixedDelayString = "${balance.listener.depth-poll-interval:10s}")
+    public void refreshQueueDepth() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(QUEUE_NAME);
+            if (info != null) {
+                queueDepth.set(info.getMessageCount());
+            }
+        } catch (RuntimeException e) {
+            log.debug("Cannot read depth of {}: {}", QUEUE_NAME, e.getMessage());
+        }
+    }
+
+    private void recordLag(Message<RabbitMessage> message) {
+        Object timestamp = message.getHeaders().get(AmqpHeaders.TIMESTAMP);
+        if (timestamp instanceof Date publishedAt) {
+            long lag = System.currentTimeMillis() - publishedAt.getTime();
+            balanceMetrics.listenerLag().record(Math.max(lag, 0), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.dto.BalanceSummaryDto;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.DailyBalanceRollup;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.RollupDelta;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.DailyBalanceRollupRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * Maintains {@link DailyBalanceRollup} rows and answers period summaries from them, so a summary
+ * reads one row per active day instead of every ledger row of the period.
+ */
+@Service
+@RequiredArgsConstructor
+public class BalanceRollupService {
+
+    private final DailyBalanceRollupRepository rollupRepository;
+    private final AccountRepository accountRepository;
+
+    /**
+     * Adds the delta to the account's row for {@code date} in the caller's transaction. Must be
+     * called after the balance change and while the account row is still locked by it, which is
+     * what makes the update-then-insert below safe against concurrent writers.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long accountId, LocalDate date, RollupDelta delta) {
+        record(accountId, date, 0, delta);
+    }
+
+    /**
+     * Same for a change to one stripe of a striped account, recorded in that stripe's rollup row
+     * while the stripe row is locked; {@code stripe} 0 is the account row.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long accountId, LocalDate date, int stripe, RollupDelta delta) {
+        if (rollupRepository.accumulate(accountId, date, stripe, delta) == 0) {
+            rollupRepository.insert(accountId, date, stripe, delta);
+        }
+    }
+
+    /**
+     * Totals for the inclusive day range plus the balances at its edges. The closing balance is
+     * the one stored with the last active day up to {@code endDate}; without one it is derived
+     * from the current balance and the activity after {@code endDate}. Striped accounts always
+     * take the derived one: concurrent stripe writers cannot agree on a closing balance.
+     */
+    @Transactional(readOnly = true)
+    public BalanceSummaryDto getSummary(Long accountId, LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+
+        RollupDelta totals = rollupRepository.sumBetween(accountId, startDate, endDate);
+        Money closingBalance = rollupRepository
+                .findFirstByAccountIdAndRollupDateLessThanEqualOrderByRollupDateDescStripeDesc(accountId, endDate)
+                .filter(rollup -> rollup.getStripe() == 0 && account.getStripes() == 0)
+                .map(DailyBalanceRollup::getClosingBalance)
+                .orElseGet(() -> Money.of(accountRepository.findTotalBalanceById(accountId).orElseThrow())
+                        .minus(rollupRepository.sumAfter(accountId, endDate).net()));
+        Money openingBalance = closingBalance.minus(totals.net());
+
+        return new BalanceSummaryDto(accountId, startDate, endDate, openingBalance, closingBalance,
+                totals.depositTotal(), totals.depositCount(),
+                totals.withdrawTotal(), totals.withdrawCount(),
+                totals.transferOutTotal(), totals.transferOutCount(),
+                totals.transferInTotal(), totals.transferInCount());
+    }
+}
@@ -2,50 +2,98 @@ package org.gopoints.balanceservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.BalanceProperties.LockingMode;
 import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountState;
+import org.gopoints.balanceservice.model.AccountStripe;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.Money;
 import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.model.RollupDelta;
 import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.model.TransactionCursor;
 import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
 import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
 import org.gopoints.balanceservice.repository.AccountRepository;
 import org.gopoints.balanceservice.repository.TransactionRepository;
-import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@CacheConfig(cacheNames = {"balance"})
 public class BalanceService {
 
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
-    private final RabbitMQService rabbitMqService;
+    private final BalanceEventPublisher balanceEventPublisher;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties balanceProperties;
+    private final TransactionRetrier transactionRetrier;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final BalanceRollupService balanceRollupService;
+    private final StripedBalanceService stripedBalanceService;
+    private final PostingService postingService;
 
+    /**
+     * The account with its whole balance. For a striped account that is a detached copy whose
+     * balance includes all stripes, read in the same transaction as the row.
+     */
     @Transactional(readOnly = true)
     public Account getAccount(Long accountId) {
-        return accountRepository.findById(accountId)
+        Account account = accountRepository.findById(accountId)
                 .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+        if (account.getStripes() == 0) {
+            return account;
+        }
+        return Account.builder()
+                .id(account.getId())
+                .userId(account.getUserId())
+                .balance(Money.of(accountRepository.findTotalBalanceById(accountId).orElseThrow()))
+                .version(account.getVersion())
+                .stripes(account.getStripes())
+                .build();
     }
 
+    /**
+     * Spreads the account's balance over {@code stripes} rows, or gathers it back into the
+     * account row for 0. Safe while the account is in use.
+     */
     @Transactional
-    public void deposit(Long accountId, BigDecimal amount) {
+    public void setStripes(Long accountId, int stripes) {
+        log.info("Setting {} stripes on account {}", stripes, accountId);
+        Account account = lockAccount(accountId);
+        stripedBalanceService.restripe(account, stripes);
+        saveBalance(account);
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    /**
+     * Runs in its own transaction, or joins the caller's, and is retried like {@link #transfer}.
+     */
+    public void deposit(Long accountId, Money amount) {
+
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
 
+        transactionRetrier.execute("deposit", () -> doDeposit(accountId, amount));
+    }
+
+    private void doDeposit(Long accountId, Money amount) {
         log.info("Depositing {} to account {}", amount, accountId);
 
-        Account account = accountRepository.findByIdWithLock(accountId)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
+        int stripe = credit(accountId, lockingMode(accountId), amount);
 
         Transaction transaction = Transaction.builder()
                 .accountId(accountId)
@@ -54,28 +102,30 @@ public class BalanceService {
                 .timestamp(LocalDateTime.now())
                 .build();
         transactionRepository.save(transaction);
+        postingService.post(transaction, null, accountId);
+        balanceRollupService.record(accountId, transaction.getTimestamp().toLocalDate(), stripe, RollupDelta.deposit(amount));
 
-        log.debug("Deposit complete. Account {} new balance: {}", accountId, account.getBalance());
+        log.debug("Deposit complete. Account {}", accountId);
 
-        rabbitMqService.sendMessage(new RabbitMessage(accountId, amount, "deposit", null));
+        balanceEventPublisher.publish(new RabbitMessage(accountId, amount, "deposit", null));
     }
 
-    @Transactional
-    public void withdraw(Long accountId, BigDecimal amount) {
+    /**
+     * Runs in its own transaction, or joins the caller's, and is retried like {@link #transfer}.
+     */
+    public void withdraw(Long accountId, Money amount) {
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
 
+        transactionRetrier.execute("withdraw", () -> doWithdraw(accountId, amount));
+    }
+
+    private void doWithdraw(Long accountId, Money amount) {
         log.info("Withdrawing {} from account {}", amount, accountId);
 
-        Account account = accountRepository.findByIdWithLock(accountId)
-                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new InsufficientFundsException("Not enough balance on account " + accountId);
-        }
-        account.setBalance(account.getBalance().subtract(amount));
-        accountRepository.save(account);
+        int stripe = debit(accountId, lockingMode(accountId), amount);
 
         Transaction transaction = Transaction.builder()
                 .accountId(accountId)
@@ -84,36 +134,64 @@ public class BalanceService {
                 .timestamp(LocalDateTime.now())
                 .build();
         transactionRepository.save(transaction);
+        postingService.post(transaction, accountId, null);
+        balanceRollupService.record(accountId, transaction.getTimestamp().toLocalDate(), stripe, RollupDelta.withdraw(amount));
 
-        log.debug("Withdraw complete. Account {} new balance: {}", accountId, account.getBalance());
+        log.debug("Withdraw complete. Account {}", accountId);
 
-        rabbitMqService.sendMessage(new RabbitMessage(accountId, amount, "withdraw", null));
+        balanceEventPublisher.publish(new RabbitMessage(accountId, amount, "withdraw", null));
     }
 
-    @Transactional
-    public void transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) {
+    /**
+     * Runs in its own transaction and is retried with jittered backoff when the database aborts it
+     * with a deadlock or lock failure, or an optimistic write loses a race. When both accounts use
+     * pessimistic locking, both rows are locked at once in ascending id order; otherwise the two
+     * sides are applied in that order, each in its account's own mode.
+     */
+    public void transfer(Long fromAccountId, Long toAccountId, Money amount) {
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
 
-        Account fromAccount = accountRepository.findByIdWithLock(fromAccountId)
-                .orElseThrow(() -> new AccountNotFoundException("Sender account not found: " + fromAccountId));
-
-        Account toAccount = accountRepository.findByIdWithLock(toAccountId)
-                .orElseThrow(() -> new AccountNotFoundException("Recipient account not found: " + toAccountId));
+        transactionRetrier.execute("transfer", () -> doTransfer(fromAccountId, toAccountId, amount));
+    }
 
+    private void doTransfer(Long fromAccountId, Long toAccountId, Money amount) {
         log.info("Transferring {} from account {} to account {}", amount, fromAccountId, toAccountId);
 
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            throw new InsufficientFundsException("Not enough balance on account: " + fromAccountId);
-        }
+        int fromStripe;
+        int toStripe;
+        LockingMode fromMode = lockingMode(fromAccountId);
+        LockingMode toMode = lockingMode(toAccountId);
+        if (fromMode != LockingMode.PESSIMISTIC || toMode != LockingMode.PESSIMISTIC
+                || stripedBalanceService.stripes(fromAccountId) > 0 || stripedBalanceService.stripes(toAccountId) > 0) {
+            if (fromAccountId <= toAccountId) {
+                fromStripe = debit(fromAccountId, fromMode, amount);
+                toStripe = credit(toAccountId, toMode, amount);
+            } else {
+                toStripe = credit(toAccountId, toMode, amount);
+                fromStripe = debit(fromAccountId, fromMode, amount);
+            }
+        } else {
+            Map<Long, Account> accounts = balanceMetrics.timeLockAcquisition("pessimistic",
+                            () -> accountRepository.findAllByIdWithLock(List.of(fromAccountId, toAccountId)))
+                    .stream()
+                    .collect(Collectors.toMap(Account::getId, Function.identity()));
+            balanceMetrics.trackLockHold("pessimistic");
 
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+            Account fromAccount = accounts.get(fromAccountId);
+            if (fromAccount == null) {
+                throw new AccountNotFoundException("Sender account not found: " + fromAccountId);
+            }
+            Account toAccount = accounts.get(toAccountId);
+            if (toAccount == null) {
+                throw new AccountNotFoundException("Recipient account not found: " + toAccountId);
+            }
 
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+            fromStripe = debitLocked(fromAccount, amount);
+            toStripe = creditLocked(toAccount, amount);
+        }
 
         Transaction transaction = Transaction.builder()
                 .accountId(fromAccountId)
@@ -123,13 +201,232 @@ public class BalanceService {
                 .build();
 
         transactionRepository.save(transaction);
+        postingService.post(transaction, fromAccountId, toAccountId);
+        balanceRollupService.record(fromAccountId, transaction.getTimestamp().toLocalDate(), fromStripe,
+                RollupDelta.transferOut(amount));
+        balanceRollupService.record(toAccountId, transaction.getTimestamp().toLocalDate(), toStripe,
+                RollupDelta.transferIn(amount));
         log.info("Transfer complete from {} to {}", fromAccountId, toAccountId);
 
-        rabbitMqService.sendMessage(new RabbitMessage(fromAccountId, amount, "transfer", toAccountId));
+        balanceEventPublisher.publish(new RabbitMessage(fromAccountId, amount, "transfer", toAccountId));
     }
 
     @Transactional(readOnly = true)
     public List<Transaction> getTransactionsByPeriod(Long accountId, LocalDateTime startDate, LocalDateTime endDate) {
         return transactionRepository.findByAccountIdAndTimestampBetween(accountId, startDate, endDate);
     }
+
+    /**
+     * One page of the period in {@code (timestamp, id)} order, starting after {@code cursor}
+     * (or at the beginning of the period when it is {@code null}).
+     */
+    @Transactional(readOnly = true)
+    public List<Transaction> getTransactionsPage(Long accountId, LocalDateTime startDate, LocalDateTime endDate,
+                                                 TransactionCursor cursor, int limit) {
+        if (cursor == null) {
+            return transactionRepository.findFirstPage(accountId, startDate, endDate, Limit.of(limit));
+        }
+        return transactionRepository.findPageAfter(accountId, cursor.timestamp(), cursor.id(), endDate, Limit.of(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public void streamTransactionsByPeriod(Long accountId, LocalDateTime startDate, LocalDateTime endDate,
+                                           Consumer<Transaction> consumer) {
+        transactionRepository.streamByAccountIdAndTimestampBetween(accountId, startDate, endDate,
+                balanceProperties.getHistory().getFetchSize(), consumer);
+    }
+
+    /**
+     * The mode configured for the account's class, or the global one.
+     */
+    private LockingMode lockingMode(Long accountId) {
+        BalanceProperties.Locking locking = balanceProperties.getLocking();
+        if (locking.getClasses().isEmpty()) {
+            return locking.getMode();
+        }
+        return accountRepository.findAccountClassById(accountId)
+                .map(locking.getClasses()::get)
+                .orElse(locking.getMode());
+    }
+
+    private Account lockAccount(Long accountId) {
+        Account account = balanceMetrics.timeLockAcquisition("pessimistic",
+                        () -> accountRepository.findByIdWithLock(accountId))
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+        balanceMetrics.trackLockHold("pessimistic");
+        return account;
+    }
+
+    /**
+     * Credits the account and returns the balance row that took the change: the number of the
+     * stripe, or 0 for the account row. Striped accounts are credited without locking the
+     * account row whenever the stripe count can be read up front.
+     */
+    private int credit(Long accountId, LockingMode mode, Money amount) {
+        int stripes = stripedBalanceService.stripes(accountId);
+        if (stripes > 0) {
+            int stripe = stripedBalanceService.credit(accountId, stripes, amount);
+            if (stripe > 0) {
+                applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(accountId));
+                return stripe;
+            }
+        }
+        if (mode == LockingMode.CONDITIONAL_UPDATE) {
+            creditConditionally(accountId, amount);
+            return 0;
+        }
+        if (mode == LockingMode.OPTIMISTIC && creditOptimistically(accountId, amount)) {
+            return 0;
+        }
+        return creditLocked(lockAccount(accountId), amount);
+    }
+
+    /**
+     * Debits the account and returns the balance row that took the change, like
+     * {@link #credit}. A striped account is debited from one stripe that holds enough; only when
+     * none does is its row locked and the stripes combined.
+     */
+    private int debit(Long accountId, LockingMode mode, Money amount) {
+        if (stripedBalanceService.stripes(accountId) > 0) {
+            int stripe = stripedBalanceService.debit(accountId, amount);
+            if (stripe > 0) {
+                applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(accountId));
+                return stripe;
+            }
+        } else if (mode == LockingMode.CONDITIONAL_UPDATE && debitConditionally(accountId, amount)) {
+            return 0;
+        } else if (mode == LockingMode.OPTIMISTIC && debitOptimistically(accountId, amount)) {
+            return 0;
+        }
+        return debitLocked(lockAccount(accountId), amount);
+    }
+
+    private int creditLocked(Account account, Money amount) {
+        if (account.getStripes() > 0) {
+            // the row lock keeps the stripe count stable, so the stripe is there
+            int stripe = stripedBalanceService.credit(account.getId(), account.getStripes(), amount);
+            if (stripe == 0) {
+                throw new IllegalStateException("Stripe missing on locked account " + account.getId());
+            }
+            applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(account.getId()));
+            return stripe;
+        }
+        account.setBalance(account.getBalance().plus(amount));
+        saveBalance(account);
+        log.debug("Account {} new balance: {}", account.getId(), account.getBalance());
+        return 0;
+    }
+
+    private int debitLocked(Account account, Money amount) {
+        if (account.getStripes() > 0) {
+            int stripe = stripedBalanceService.debit(account.getId(), amount);
+            if (stripe > 0) {
+                applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(account.getId()));
+                return stripe;
+            }
+            List<AccountStripe> stripes = stripedBalanceService.collapse(account);
+            requireFunds(account, amount);
+            account.setBalance(account.getBalance().minus(amount));
+            stripedBalanceService.spread(account, stripes);
+            saveBalance(account);
+            return 0;
+        }
+        requireFunds(account, amount);
+        account.setBalance(account.getBalance().minus(amount));
+        saveBalance(account);
+        log.debug("Account {} new balance: {}", account.getId(), account.getBalance());
+        return 0;
+    }
+
+    private void requireFunds(Account account, Money amount) {
+        if (account.getBalance().isLessThan(amount)) {
+            throw new InsufficientFundsException("Not enough balance on account " + account.getId());
+        }
+    }
+
+    /**
+     * Flushes right away so that the event carries the version Hibernate assigned.
+     */
+    private void saveBalance(Account account) {
+        accountRepository.saveAndFlush(account);
+        applicationEventPublisher.publishEvent(BalanceChangedEvent.of(account));
+    }
+
+    private void creditConditionally(Long accountId, Money amount) {
+        int updated = balanceMetrics.timeLockAcquisition("conditional-update",
+                () -> accountRepository.incrementBalance(accountId, amount.toBigDecimal()));
+        balanceMetrics.trackLockHold("conditional-update");
+        if (updated == 0) {
+            throw new AccountNotFoundException("Account not found: " + accountId);
+        }
+        applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(accountId));
+    }
+
+    /**
+     * Returns {@code false} when the account row alone does not hold enough but the account is
+     * striped, so the rest of the balance may sit in its stripes.
+     */
+    private boolean debitConditionally(Long accountId, Money amount) {
+        int updated = balanceMetrics.timeLockAcquisition("conditional-update",
+                () -> accountRepository.decrementBalanceIfSufficient(accountId, amount.toBigDecimal()));
+        balanceMetrics.trackLockHold("conditional-update");
+        if (updated == 0) {
+            int stripes = accountRepository.findStripesById(accountId)
+                    .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+            if (stripes > 0) {
+                return false;
+            }
+            throw new InsufficientFundsException("Not enough balance on account " + accountId);
+        }
+        applicationEventPublisher.publishEvent(BalanceChangedEvent.unknown(accountId));
+        return true;
+    }
+
+    /**
+     * Returns {@code false} for a striped account, which needs the row lock to combine stripes.
+     */
+    private boolean creditOptimistically(Long accountId, Money amount) {
+        AccountState state = readState(accountId);
+        if (state.stripes() > 0) {
+            return false;
+        }
+        writeOptimistically(state, state.balance().plus(amount));
+        return true;
+    }
+
+    /**
+     * Returns {@code false} for a striped account, like {@link #creditOptimistically}.
+     */
+    private boolean debitOptimistically(Long accountId, Money amount) {
+        AccountState state = readState(accountId);
+        if (state.stripes() > 0) {
+            return false;
+        }
+        if (state.balance().isLessThan(amount)) {
+            throw new InsufficientFundsException("Not enough balance on account " + accountId);
+        }
+        writeOptimistically(state, state.balance().minus(amount));
+        return true;
+    }
+
+    private AccountState readState(Long accountId) {
+        return balanceMetrics.timeLockAcquisition("optimistic", () -> accountRepository.findStateById(accountId))
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+    }
+
+    /**
+     * Writes the new balance if the row still has the version that was read. Otherwise the
+     * transaction fails with an optimistic locking failure, which {@link TransactionRetrier}
+     * answers by running the whole operation again.
+     */
+    private void writeOptimistically(AccountState state, Money balance) {
+        int updated = accountRepository.updateBalanceIfVersion(state.id(), balance.toBigDecimal(), state.version());
+        if (updated == 0) {
+            balanceMetrics.optimisticConflicts(state.accountClass()).increment();
+            throw new ObjectOptimisticLockingFailureException(Account.class, state.id());
+        }
+        balanceMetrics.trackLockHold("optimistic");
+        applicationEventPublisher.publishEvent(
+                new BalanceChangedEvent(state.id(), state.userId(), balance, state.version() + 1));
+    }
 }
@@ -0,0 +1,187 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.dto.BalanceAtDto;
+import org.gopoints.balanceservice.dto.LedgerAuditDto;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceSnapshot;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.AccountStripeRepository;
+import org.gopoints.balanceservice.repository.BalanceSnapshotRepository;
+import org.gopoints.balanceservice.repository.PostingRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Checkpoints running balances in {@link BalanceSnapshot}s and answers balance-at-time and audit
+ * queries from the nearest snapshot plus the postings around it, instead of from the whole ledger.
+ * <p>
+ * A snapshot is taken while the account row and its stripes are locked, so every posting of the
+ * account up to the snapshot's last posting id has committed and none can follow below it. The
+ * first snapshot of an account adopts its stored balance; every later one is the previous
+ * snapshot plus the postings since, and a difference from the stored balance at that point is
+ * logged and counted as a ledger mismatch.
+ */
+@Service
+@Slf4j
+public class BalanceSnapshotService {
+
+    private final AccountRepository accountRepository;
+    private final AccountStripeRepository accountStripeRepository;
+    private final PostingRepository postingRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionRetrier transactionRetrier;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties.Snapshots properties;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Highest posting id whose accounts were already visited by the periodic job. A posting that
+     * commits below it later is covered by the account's next snapshot.
+     */
+    private volatile long scannedPostingId;
+
+    public BalanceSnapshotService(AccountRepository accountRepository,
+                                  AccountStripeRepository accountStripeRepository,
+                                  PostingRepository postingRepository,
+                                  BalanceSnapshotRepository snapshotRepository,
+                                  TransactionRetrier transactionRetrier,
+                                  BalanceMetrics balanceMetrics,
+                                  BalanceProperties balanceProperties,
+                                  PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.accountStripeRepository = accountStripeRepository;
+        this.postingRepository = postingRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionRetrier = transactionRetrier;
+        this.balanceMetrics = balanceMetrics;
+        this.properties = balanceProperties.getSnapshots();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Snapshots every account with postings since the last run, each in its own short
+     * transaction, then removes snapshots past the retention period.
+     */
+    @Scheduled(fixedDelayString = "${balance.snapshots.interval:10m}")
+    public void takeSnapshots() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Long lastPostingId = postingRepository.findLastId();
+        if (lastPostingId != null && lastPostingId > scannedPostingId) {
+            int taken = 0;
+            for (Long accountId : postingRepository.findAccountIdsPostedBetween(scannedPostingId, lastPostingId)) {
+                try {
+                    if (snapshot(accountId)) {
+                        taken++;
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Could not snapshot account {}: {}", accountId, e.getMessage());
+                }
+            }
+            scannedPostingId = lastPostingId;
+            log.debug("Took {} balance snapshots up to posting {}", taken, lastPostingId);
+        }
+        if (properties.getRetention().isPositive()) {
+            Integer deleted = transactionTemplate.execute(status ->
+                    snapshotRepository.deleteTakenBefore(LocalDateTime.now().minus(properties.getRetention())));
+            if (deleted != null && deleted > 0) {
+                log.debug("Removed {} expired balance snapshots", deleted);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the account now, unless it has no postings since its last one.
+     *
+     * @return whether a snapshot was written
+     */
+    public boolean snapshot(Long accountId) {
+        return transactionRetrier.execute("snapshot", () -> takeSnapshot(accountId));
+    }
+
+    /**
+     * The account's balance right after the last posting made up to {@code at}: the nearest
+     * snapshot at or before {@code at} rolled forward, or else the first one after it rolled back,
+     * or else the current balance rolled back.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public BalanceAtDto getBalanceAt(Long accountId, LocalDateTime at) {
+        Money current = Money.of(accountRepository.findTotalBalanceById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId)));
+        Money balance = snapshotRepository.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(accountId, at)
+                .map(snapshot -> snapshot.getBalance().plus(Money.of(
+                        postingRepository.sumAfterPostedUpTo(accountId, snapshot.getLastPostingId(), at))))
+                .or(() -> snapshotRepository.findFirstByAccountIdAndTakenAtAfterOrderByTakenAtAsc(accountId, at)
+                        .map(snapshot -> snapshot.getBalance().minus(Money.of(
+                                postingRepository.sumUpToPostedAfter(accountId, snapshot.getLastPostingId(), at)))))
+                .orElseGet(() -> current.minus(Money.of(postingRepository.sumPostedAfter(accountId, at))));
+        return new BalanceAtDto(accountId, at, balance);
+    }
+
+    /**
+     * Compares the stored balance with the latest snapshot plus the postings after it. Both are
+     * read from one repeatable-read snapshot of the database, so a concurrent change cannot make
+     * them differ.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public LedgerAuditDto audit(Long accountId) {
+        Money balance = Money.of(accountRepository.findTotalBalanceById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId)));
+        Optional<BalanceSnapshot> snapshot = snapshotRepository.findFirstByAccountIdOrderByIdDesc(accountId);
+        long afterId = snapshot.map(BalanceSnapshot::getLastPostingId).orElse(0L);
+        Money ledgerBalance = snapshot.map(BalanceSnapshot::getBalance).orElse(Money.ZERO)
+                .plus(Money.of(postingRepository.sumAfter(accountId, afterId)));
+        return new LedgerAuditDto(accountId, balance, ledgerBalance,
+                snapshot.map(BalanceSnapshot::getLastPostingId).orElse(null),
+                snapshot.map(BalanceSnapshot::getBalance).orElse(null),
+                snapshot.map(BalanceSnapshot::getTakenAt).orElse(null),
+                postingRepository.countByAccountIdAndIdGreaterThan(accountId, afterId),
+                balance.equals(ledgerBalance));
+    }
+
+    private boolean takeSnapshot(Long accountId) {
+        Account account = balanceMetrics.timeLockAcquisition("snapshot",
+                        () -> accountRepository.findByIdWithLock(accountId))
+                .orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
+        if (account.getStripes() > 0) {
+            balanceMetrics.timeLockAcquisition("snapshot",
+                    () -> accountStripeRepository.findAllByAccountIdWithLock(accountId));
+        }
+        balanceMetrics.trackLockHold("snapshot");
+
+        Long lastPostingId = postingRepository.findLastIdByAccountId(accountId);
+        Optional<BalanceSnapshot> previous = snapshotRepository.findFirstByAccountIdOrderByIdDesc(accountId);
+        if (lastPostingId == null || previous.filter(p -> p.getLastPostingId() >= lastPostingId).isPresent()) {
+            return false;
+        }
+        Money balance = Money.of(accountRepository.findTotalBalanceById(accountId).orElseThrow());
+        Money ledgerBalance = previous
+                .map(p -> p.getBalance().plus(Money.of(postingRepository.sumAfter(accountId, p.getLastPostingId()))))
+                .orElse(balance);
+        if (!ledgerBalance.equals(balance)) {
+            balanceMetrics.ledgerMismatches().increment();
+            log.error("Ledger mismatch on account {}: stored balance {}, postings give {}",
+                    accountId, balance, ledgerBalance);
+        }
+        snapshotRepository.save(BalanceSnapshot.builder()
+                .accountId(accountId)
+                .lastPostingId(lastPostingId)
+                .balance(ledgerBalance)
+                .takenAt(LocalDateTime.now())
+                .build());
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.ReplicaRoutingDataSource;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes committed balances of an account to everyone watching it. Changes arrive through the
+ * same after-commit hook as {@link BalanceCache}, so they cover the REST, reactive, batch and
+ * {@code balanceQueue} paths of this instance. Each watched account has one shared stream: a
+ * change whose balance is unknown (striped accounts, conditional updates) is read back from the
+ * primary once for all its subscribers, and accounts nobody watches cost a map lookup.
+ * <p>
+ * A balance is a state, not a log, so a subscriber that falls behind gets only the latest one:
+ * every stage keeps at most one pending balance instead of buffering. Versions never go
+ * backwards within a subscription.
+ */
+@Service
+@Slf4j
+public class BalanceStreamService {
+
+    private final BalanceService balanceService;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties.Stream properties;
+    private final Map<Long, AccountStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public BalanceStreamService(BalanceService balanceService,
+                                BalanceProperties balanceProperties,
+                                BalanceMetrics balanceMetrics) {
+        this.balanceService = balanceService;
+        this.balanceMetrics = balanceMetrics;
+        this.properties = balanceProperties.getStream();
+        balanceMetrics.streamSubscribersGauge(subscribers::get);
+    }
+
+    /**
+     * The current balance followed by every committed change, until the subscription is cancelled.
+     *
+     * @throws AdmissionRejectedException on subscription, when {@code balance.stream.max-subscribers}
+     *                                    streams are already open
+     */
+    public Flux<BalanceChangedEvent> balances(Long accountId) {
+        return Flux.defer(() -> {
+            AccountStream stream = join(accountId);
+            AtomicLong lastVersion = new AtomicLong(Long.MIN_VALUE);
+            // changes first, so that none is missed while the current balance is being read
+            return Flux.merge(stream.balances, read(accountId))
+                    .filter(event -> lastVersion.getAndAccumulate(event.version(), Math::max) <= event.version())
+                    .onBackpressureLatest()
+                    .doFinally(signal -> leave(accountId));
+        });
+    }
+
+    public int subscribers() {
+        return subscribers.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        AccountStream stream = streams.get(event.accountId());
+        if (stream == null) {
+            return;
+        }
+        // the sink needs serialized emits; unlike synchronized, the lock does not pin a virtual thread
+        Sinks.EmitResult result;
+        stream.emitLock.lock();
+        try {
+            result = stream.changes.tryEmitNext(event);
+        } finally {
+            stream.emitLock.unlock();
+        }
+        // without subscribers yet the change is covered by their initial read
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.warn("Balance change of account {} not streamed: {}", event.accountId(), result);
+            balanceMetrics.streamDropped(result.name().toLowerCase()).increment();
+        }
+    }
+
+    private AccountStream join(Long accountId) {
+        if (subscribers.incrementAndGet() > properties.getMaxSubscribers()) {
+            subscribers.decrementAndGet();
+            throw new AdmissionRejectedException("Too many balance streams open", properties.getHeartbeatInterval());
+        }
+        return streams.compute(accountId, (id, stream) -> {
+            AccountStream joined = stream != null ? stream : new AccountStream();
+            joined.subscribers++;
+            return joined;
+        });
+    }
+
+    private void leave(Long accountId) {
+        streams.computeIfPresent(accountId, (id, stream) -> --stream.subscribers == 0 ? null : stream);
+        subscribers.decrementAndGet();
+    }
+
+    private Mono<BalanceChangedEvent> resolve(BalanceChangedEvent event) {
+        if (event.isBalanceKnown()) {
+            return Mono.just(event);
+        }
+        return read(event.accountId())
+                .onErrorResume(e -> {
+                    log.warn("Could not read balance of account {} for its stream", event.accountId(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<BalanceChangedEvent> read(Long accountId) {
+        return Mono.fromCallable(() -> {
+                    // straight after the commit a replica may not have the change yet
+                    Account account = ReplicaRoutingDataSource.onPrimary(() -> balanceService.getAccount(accountId));
+                    return new BalanceChangedEvent(account.getId(), account.getUserId(), account.getBalance(),
+                            account.getVersion());
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private final class AccountStream {
+
+        private final Sinks.Many<BalanceChangedEvent> changes = Sinks.many().multicast().directBestEffort();
+        private final Lock emitLock = new ReentrantLock();
+        private final Flux<BalanceChangedEvent> balances;
+        /**
+         * Guarded by the {@code streams} map: only changed inside its compute functions.
+         */
+        private int subscribers;
+
+        private AccountStream() {
+            this.balances = changes.asFlux()
+                    .onBackpressureLatest()
+                    .concatMap(BalanceStreamService.this::resolve, 1)
+                    .publish(1)
+                    .autoConnect();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountStripe;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.OperationType;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.model.RollupDelta;
+import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.TransactionRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a list of ledger operations in one database transaction. Every touched account,
+ * including transfer recipients, is locked once in ascending id order, its balance is updated
+ * once with the net result of all its operations, and the ledger rows and their postings are
+ * written with one JDBC batch each. Operations are applied in list order. An operation that fails
+ * validation (unknown account, insufficient funds, a balance that would overflow) is reported in
+ * its own result and does not affect the others.
+ * <p>
+ * Striped accounts are collapsed into their locked account row for the duration of the batch
+ * and their balance is spread back over the stripes before the transaction ends.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchLedgerService {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceEventPublisher balanceEventPublisher;
+    private final BalanceMetrics balanceMetrics;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final BalanceRollupService balanceRollupService;
+    private final StripedBalanceService stripedBalanceService;
+    private final PostingService postingService;
+
+    @Transactional
+    public List<LedgerOperationResult> apply(List<LedgerOperation> operations) {
+        Set<Long> accountIds = new LinkedHashSet<>();
+        for (LedgerOperation operation : operations) {
+            if (operation.accountId() != null) {
+                accountIds.add(operation.accountId());
+            }
+            if (operation.targetAccountId() != null) {
+                accountIds.add(operation.targetAccountId());
+            }
+        }
+        Map<Long, Account> accounts = accountIds.isEmpty() ? Map.of()
+                : balanceMetrics.timeLockAcquisition("batch", () -> accountRepository.findAllByIdWithLock(accountIds))
+                        .stream()
+                        .collect(Collectors.toMap(Account::getId, Function.identity()));
+        balanceMetrics.trackLockHold("batch");
+        Map<Account, List<AccountStripe>> stripes = new HashMap<>();
+        for (Account account : accounts.values()) {
+            if (account.getStripes() > 0) {
+                stripes.put(account, stripedBalanceService.collapse(account));
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerOperationResult> results = new ArrayList<>(operations.size());
+        List<PostingService.Entry> ledger = new ArrayList<>(operations.size());
+        Set<Account> changed = new LinkedHashSet<>();
+        Map<Long, RollupDelta> rollups = new HashMap<>();
+        for (LedgerOperation operation : operations) {
+            try {
+                validate(operation);
+                Account account = account(accounts, operation.accountId());
+                if (operation.type() == OperationType.TRANSFER) {
+                    Account target = account(accounts, operation.targetAccountId());
+                    // computed before the debit so that an overflow leaves both accounts untouched
+                    Money credited = target.getBalance().plus(operation.amount());
+                    debit(account, operation.amount());
+                    target.setBalance(credited);
+                    changed.add(target);
+                    rollups.merge(target.getId(), RollupDelta.transferIn(operation.amount()), RollupDelta::plus);
+                } else {
+                    applyTo(account, operation);
+                }
+                changed.add(account);
+                rollups.merge(account.getId(), rollupDelta(operation), RollupDelta::plus);
+                ledger.add(entry(operation, now));
+                results.add(LedgerOperationResult.success(operation, account.getBalance()));
+            } catch (AccountNotFoundException | InsufficientFundsException | IllegalArgumentException
+                     | ArithmeticException e) {
+                results.add(LedgerOperationResult.failure(operation, e));
+            }
+        }
+
+        stripes.forEach(stripedBalanceService::spread);
+        // Hibernate assigns the new @Version values on flush; the events carry them
+        accountRepository.flush();
+        for (Account account : changed) {
+            applicationEventPublisher.publishEvent(BalanceChangedEvent.of(account));
+        }
+        transactionRepository.batchInsert(ledger.stream().map(PostingService.Entry::transaction).toList());
+        postingService.post(ledger);
+        rollups.forEach((accountId, delta) -> balanceRollupService.record(accountId, now.toLocalDate(), delta));
+        log.debug("Applied batch of {} operations on {} accounts", operations.size(), accounts.size());
+
+        for (LedgerOperationResult result : results) {
+            if (result.isSuccess()) {
+                LedgerOperation operation = result.operation();
+                balanceEventPublisher.publish(new RabbitMessage(operation.accountId(), operation.amount(),
+                        operation.type().name().toLowerCase(), operation.targetAccountId()));
+            }
+        }
+        return results;
+    }
+
+    private void validate(LedgerOperation operation) {
+        if (operation.type() == null || operation.accountId() == null || operation.amount() == null) {
+            throw new IllegalArgumentException("Operation type, account and amount are required");
+        }
+        if (!operation.amount().isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (operation.type() == OperationType.TRANSFER && operation.targetAccountId() == null) {
+            throw new IllegalArgumentException("Transfer requires a recipient account");
+        }
+        if (operation.type() == OperationType.TRANSFER && operation.accountId().equals(operation.targetAccountId())) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+    }
+
+    private Account account(Map<Long, Account> accounts, Long accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not found: " + accountId);
+        }
+        return account;
+    }
+
+    private PostingService.Entry entry(LedgerOperation operation, LocalDateTime now) {
+        Transaction transaction = Transaction.builder()
+                .accountId(operation.accountId())
+                .amount(operation.amount())
+                .operationType(operation.type().name())
+                .timestamp(now)
+                .build();
+        return switch (operation.type()) {
+            case DEPOSIT -> new PostingService.Entry(transaction, null, operation.accountId());
+            case WITHDRAW -> new PostingService.Entry(transaction, operation.accountId(), null);
+            case TRANSFER -> new PostingService.Entry(transaction, operation.accountId(), operation.targetAccountId());
+        };
+    }
+
+    private RollupDelta rollupDelta(LedgerOperation operation) {
+        return switch (operation.type()) {
+            case DEPOSIT -> RollupDelta.deposit(operation.amount());
+            case WITHDRAW -> RollupDelta.withdraw(operation.amount());
+            case TRANSFER -> RollupDelta.transferOut(operation.amount());
+        };
+    }
+
+    private void applyTo(Account account, LedgerOperation operation) {
+        switch (operation.type()) {
+            case DEPOSIT -> account.setBalance(account.getBalance().plus(operation.amount()));
+            case WITHDRAW -> debit(account, operation.amount());
+            default -> throw new IllegalArgumentException("Unsupported operation " + operation.type());
+        }
+    }
+
+    private void debit(Account account, Money amount) {
+        if (account.getBalance().isLessThan(amount)) {
+            throw new InsufficientFundsException("Not enough balance on account " + account.getId());
+        }
+        account.setBalance(account.getBalance().minus(amount));
+    }
+}
@@ -0,0 +1,47 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of the bulk operations API. The request is cut into chunks that are each applied
+ * by {@link BatchLedgerService} in one transaction, retried as a whole on deadlocks and lock
+ * failures. Results come back in request order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchOperationService {
+
+    private final BatchLedgerService batchLedgerService;
+    private final TransactionRetrier transactionRetrier;
+    private final BalanceProperties balanceProperties;
+
+    public List<LedgerOperationResult> execute(List<LedgerOperation> operations) {
+        BalanceProperties.Batch properties = balanceProperties.getBatch();
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one operation");
+        }
+        if (operations.size() > properties.getMaxOperations()) {
+            throw new IllegalArgumentException("Batch must not contain more than "
+                    + properties.getMaxOperations() + " operations");
+        }
+
+        List<LedgerOperationResult> results = new ArrayList<>(operations.size());
+        for (int from = 0; from < operations.size(); from += properties.getChunkSize()) {
+            List<LedgerOperation> chunk = operations.subList(from,
+                    Math.min(from + properties.getChunkSize(), operations.size()));
+            results.addAll(transactionRetrier.execute("batch", () -> batchLedgerService.apply(chunk)));
+        }
+        log.info("Batch of {} operations applied, {} failed", operations.size(),
+                results.stream().filter(result -> !result.isSuccess()).count());
+        return results;
+    }
+}
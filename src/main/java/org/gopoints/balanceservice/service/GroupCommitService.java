@@ -0,0 +1,212 @@
+package org.gopoints.balanceservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in group-commit pipeline for deposits and withdrawals. Callers enqueue operations and wait
+ * on a future; a single flusher thread collects everything that arrives within the configured
+ * window (or until the batch is full) and commits it in one {@link BatchLedgerService#apply}
+ * transaction, retried as a whole on deadlocks and lock failures. Each caller's future is
+ * completed with the result of its own operation. A caller that times out withdraws its operation
+ * unless the flusher has already claimed it for a batch, so a failed request is never committed
+ * behind the caller's back.
+ */
+@Service
+@Slf4j
+public class GroupCommitService {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BatchLedgerService batchLedgerService;
+    private final TransactionRetrier transactionRetrier;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties.GroupCommit properties;
+    private final BlockingQueue<PendingOperation> queue;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public GroupCommitService(BatchLedgerService batchLedgerService,
+                              TransactionRetrier transactionRetrier,
+                              BalanceMetrics balanceMetrics,
+                              BalanceProperties balanceProperties) {
+        this.batchLedgerService = batchLedgerService;
+        this.transactionRetrier = transactionRetrier;
+        this.balanceMetrics = balanceMetrics;
+        this.properties = balanceProperties.getGroupCommit();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "group-commit-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Group commit enabled: window={}, maxBatchSize={}", properties.getWindow(), properties.getMaxBatchSize());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        List<PendingOperation> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        leftovers.forEach(pending -> pending.future()
+                .completeExceptionally(new IllegalStateException("Group commit is shutting down")));
+    }
+
+    public void deposit(Long accountId, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }
+        await(enqueue(LedgerOperation.deposit(accountId, amount)));
+    }
+
+    public void withdraw(Long accountId, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        await(enqueue(LedgerOperation.withdraw(accountId, amount)));
+    }
+
+    public CompletableFuture<LedgerOperationResult> submit(LedgerOperation operation) {
+        return enqueue(operation).future();
+    }
+
+    private PendingOperation enqueue(LedgerOperation operation) {
+        if (!running) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+        PendingOperation pending = new PendingOperation(operation, new CompletableFuture<>(), new AtomicBoolean());
+        if (!queue.offer(pending)) {
+            throw new IllegalStateException("Group commit queue is full");
+        }
+        // stop() may have drained the queue between the check above and the offer
+        if (!running && queue.remove(pending)) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+        return pending;
+    }
+
+    private LedgerOperationResult await(PendingOperation pending) {
+        try {
+            try {
+                return pending.future().get(properties.getAwaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pending.claim()) {
+                    queue.remove(pending);
+                    IllegalStateException timeout = new IllegalStateException(
+                            "Group commit did not start within " + properties.getAwaitTimeout());
+                    pending.future().completeExceptionally(timeout);
+                    throw timeout;
+                }
+                // already part of a batch being committed, whose outcome the caller has to learn
+                return pending.future().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingOperation> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running) {
+            try {
+                PendingOperation first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + properties.getWindow().toNanos();
+                while (batch.size() < properties.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingOperation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // drops operations whose callers gave up waiting
+                batch.removeIf(pending -> !pending.claim());
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingOperation> batch) {
+        balanceMetrics.groupCommitBatchSize().record(batch.size());
+        List<LedgerOperationResult> results;
+        try {
+            List<LedgerOperation> operations = batch.stream().map(PendingOperation::operation).toList();
+            results = transactionRetrier.execute("group-commit", () -> batchLedgerService.apply(operations));
+        } catch (RuntimeException e) {
+            log.error("Group commit of {} operations failed", batch.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            LedgerOperationResult result = results.get(i);
+            if (result.isSuccess()) {
+                batch.get(i).future().complete(result);
+            } else {
+                batch.get(i).future().completeExceptionally(result.error());
+            }
+        }
+    }
+
+    private record PendingOperation(LedgerOperation operation, CompletableFuture<LedgerOperationResult> future,
+                                    AtomicBoolean claimed) {
+
+        /**
+         * Taken by the flusher before the operation is applied, or by a timed-out caller to
+         * withdraw it; only one of them succeeds.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
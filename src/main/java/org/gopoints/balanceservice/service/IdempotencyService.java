@@ -0,0 +1,135 @@
+package org.gopoints.balanceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.IdempotencyKey;
+import org.gopoints.balanceservice.model.exceptions.IdempotencyKeyReusedException;
+import org.gopoints.balanceservice.repository.IdempotencyKeyRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Makes money-moving requests safe to retry. The key is inserted into {@code idempotency_keys}
+ * in the same transaction as the ledger change, so it exists if and only if the change committed.
+ * Keys of committed requests are also kept in a bounded in-memory cache, which answers most
+ * retries without touching the database or the account row lock.
+ * <p>
+ * Only successful requests are remembered: a request that failed rolled its key back with it and
+ * is executed again when retried.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Cache<String, String> idempotencyCaffeineCache;
+    private final TransactionRetrier transactionRetrier;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties.Idempotency properties;
+    private final TransactionTemplate transactionTemplate;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              Cache<String, String> idempotencyCaffeineCache,
+                              TransactionRetrier transactionRetrier,
+                              BalanceMetrics balanceMetrics,
+                              BalanceProperties balanceProperties,
+                              PlatformTransactionManager transactionManager) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyCaffeineCache = idempotencyCaffeineCache;
+        this.transactionRetrier = transactionRetrier;
+        this.balanceMetrics = balanceMetrics;
+        this.properties = balanceProperties.getIdempotency();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Identifies the request a key was used for, e.g. {@code deposit:1:50.00}. Amounts are
+     * {@link org.gopoints.balanceservice.model.Money}, so {@code 50} and {@code 50.00} give the
+     * same fingerprint.
+     */
+    public static String fingerprint(Object... parts) {
+        return Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining(":"));
+    }
+
+    /**
+     * Runs {@code action} unless a request with this key already committed.
+     *
+     * @return {@code true} if the request is a replay and {@code action} was not run
+     * @throws IdempotencyKeyReusedException if the key was already used for a different request
+     */
+    public boolean execute(String key, String operation, String fingerprint, Runnable action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String cached = idempotencyCaffeineCache.getIfPresent(key);
+        if (cached != null) {
+            return replay(key, cached, fingerprint, "memory");
+        }
+        IdempotencyKey stored = idempotencyKeyRepository.findById(key)
+                .filter(existing -> existing.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElse(null);
+        if (stored != null) {
+            idempotencyCaffeineCache.put(key, stored.getFingerprint());
+            return replay(key, stored.getFingerprint(), fingerprint, "database");
+        }
+
+        try {
+            transactionRetrier.execute(operation, () -> {
+                LocalDateTime now = LocalDateTime.now();
+                idempotencyKeyRepository.deleteIfExpired(key, now);
+                idempotencyKeyRepository.insert(key, fingerprint, now, now.plus(properties.getTtl()));
+                action.run();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent request with the same key committed first
+            String winner = idempotencyKeyRepository.findById(key)
+                    .map(IdempotencyKey::getFingerprint)
+                    .orElseThrow(() -> e);
+            idempotencyCaffeineCache.put(key, winner);
+            return replay(key, winner, fingerprint, "database");
+        }
+        idempotencyCaffeineCache.put(key, fingerprint);
+        return false;
+    }
+
+    /**
+     * Removes expired keys in small batches, each in its own short transaction.
+     */
+    @Scheduled(fixedDelayString = "${balance.idempotency.sweep-interval:1m}")
+    public void sweep() {
+        int batchSize = properties.getSweepBatchSize();
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    idempotencyKeyRepository.deleteExpired(LocalDateTime.now(), batchSize));
+            total += deleted == null ? 0 : deleted;
+        } while (deleted != null && deleted == batchSize);
+        if (total > 0) {
+            log.debug("Removed {} expired idempotency keys", total);
+        }
+    }
+
+    private boolean replay(String key, String storedFingerprint, String fingerprint, String source) {
+        if (!storedFingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException("Idempotency key " + key + " was already used for a different request");
+        }
+        balanceMetrics.idempotentReplays(source).increment();
+        log.info("Replaying request with idempotency key {} ({})", key, source);
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.BalanceProperties.PublishMode;
+import org.gopoints.balanceservice.model.OutboxEvent;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.repository.OutboxEventRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Drains the outbox in batches: each batch is published with publisher confirms and deleted in
+ * the same transaction that locked it. If publishing fails the transaction rolls back and the
+ * rows are picked up again on the next run, so delivery is at-least-once.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxService outboxService;
+    private final RabbitMQService rabbitMqService;
+    private final BalanceProperties balanceProperties;
+    private final BalanceMetrics balanceMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxService outboxService,
+                       RabbitMQService rabbitMqService,
+                       BalanceProperties balanceProperties,
+                       BalanceMetrics balanceMetrics,
+                       PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxService = outboxService;
+        this.rabbitMqService = rabbitMqService;
+        this.balanceProperties = balanceProperties;
+        this.balanceMetrics = balanceMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${balance.outbox.poll-interval:200ms}")
+    public void relay() {
+        if (balanceProperties.getEvents().getMode() != PublishMode.OUTBOX) {
+            return;
+        }
+        int batchSize = balanceProperties.getOutbox().getBatchSize();
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch(batchSize));
+            } while (relayed != null && relayed == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch(int batchSize) {
+        List<OutboxEvent> events = outboxEventRepository.findPendingForRelay(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<RabbitMessage> messages = events.stream().map(outboxService::deserialize).toList();
+        balanceMetrics.recordPublish("outbox", () -> rabbitMqService.sendBatch(messages,
+                balanceProperties.getOutbox().getConfirmTimeout()));
+        outboxEventRepository.deleteAllInBatch(events);
+        log.debug("Relayed {} outbox events", events.size());
+        return events.size();
+    }
+}
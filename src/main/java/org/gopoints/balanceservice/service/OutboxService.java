@@ -0,0 +1,52 @@
+package org.gopoints.balanceservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.model.OutboxEvent;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    static final String ROUTING_KEY = "balanceQueue";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Stores the message in the outbox as part of the caller's transaction, so it is published
+     * if and only if the ledger change commits.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(RabbitMessage message) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .routingKey(ROUTING_KEY)
+                .payload(serialize(message))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    RabbitMessage deserialize(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), RabbitMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox event " + event.getId(), e);
+        }
+    }
+
+    private String serialize(RabbitMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize message " + message, e);
+        }
+    }
+}
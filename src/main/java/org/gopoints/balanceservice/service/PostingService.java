@@ -0,0 +1,69 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.Posting;
+import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.repository.PostingRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the double-entry postings of journal rows. Every entry moves its amount from one side to
+ * the other: the {@code from} side gets a negative posting and the {@code to} side a positive one,
+ * so the postings of an entry always sum to zero. {@code null} stands for the world outside the
+ * service: the payer of a deposit and the payee of a withdrawal.
+ */
+@Service
+@RequiredArgsConstructor
+public class PostingService {
+
+    private final PostingRepository postingRepository;
+
+    /**
+     * Posts one journal row in the caller's transaction; the row must already have its id.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void post(Transaction transaction, Long fromAccountId, Long toAccountId) {
+        post(List.of(new Entry(transaction, fromAccountId, toAccountId)));
+    }
+
+    /**
+     * Posts several journal rows with one JDBC batch in the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void post(List<Entry> entries) {
+        List<Posting> postings = new ArrayList<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            Transaction transaction = entry.transaction();
+            postings.add(posting(transaction, entry.fromAccountId(), transaction.getAmount().negate()));
+            postings.add(posting(transaction, entry.toAccountId(), transaction.getAmount()));
+        }
+        postingRepository.batchInsert(postings);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Posting> getPostingsByPeriod(Long accountId, LocalDateTime startDate, LocalDateTime endDate) {
+        return postingRepository.findByAccountIdAndPostedAtBetweenOrderById(accountId, startDate, endDate);
+    }
+
+    private static Posting posting(Transaction transaction, Long accountId, Money amount) {
+        return Posting.builder()
+                .transactionId(transaction.getId())
+                .accountId(accountId)
+                .amount(amount)
+                .postedAt(transaction.getTimestamp())
+                .build();
+    }
+
+    /**
+     * A journal row and the two sides it moves money between.
+     */
+    public record Entry(Transaction transaction, Long fromAccountId, Long toAccountId) {
+    }
+}
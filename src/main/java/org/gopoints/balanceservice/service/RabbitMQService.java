@@ -3,11 +3,12 @@ package org.gopoints.balanceservice.service;
 import lombok.extern.slf4j.Slf4j;
 import org.gopoints.balanceservice.model.RabbitMessage;
 
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+
 @Service
 @Slf4j
 public class RabbitMQService {
@@ -22,23 +23,39 @@ public class RabbitMQService {
         rabbitTemplate.convertAndSend("balanceQueue", message);
     }
 
-    @RabbitListener(queues = "balanceQueue")
-    public void process(@Payload RabbitMessage message) {
+    /**
+     * Publishes all messages on one channel and blocks until the broker has confirmed every one
+     * of them. Throws if any message is nacked or the confirms do not arrive in time.
+     */
+    public void sendBatch(List<RabbitMessage> messages, Duration confirmTimeout) {
+        rabbitTemplate.invoke(operations -> {
+            messages.forEach(message -> operations.convertAndSend("balanceQueue", message));
+            operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+            return null;
+        });
+    }
+
+    public void processBatch(List<RabbitMessage> messages) {
+        messages.forEach(this::process);
+        log.debug("Batch of {} messages processed", messages.size());
+    }
+
+    public void process(RabbitMessage message) {
 
-        log.info("Received message from queue: {}", message);
+        log.debug("Received message from queue: {}", message);
         if ("deposit".equals(message.getOperationType())) {
-            log.info("Processing deposit operation for accountId={}, amount={}", message.getAccountId(), message.getAmount());
+            log.debug("Processing deposit operation for accountId={}, amount={}", message.getAccountId(), message.getAmount());
             //service notification
         } else if ("withdraw".equals(message.getOperationType())) {
-            log.info("Processing withdraw operation for accountId={}, amount={}", message.getAccountId(), message.getAmount());
+            log.debug("Processing withdraw operation for accountId={}, amount={}", message.getAccountId(), message.getAmount());
             //service notification
         } else if ("transfer".equals(message.getOperationType()) && message.getTargetAccountId() != null) {
-            log.info("Processing transfer operation from accountId={} to targetAccountId={}, amount={}",
+            log.debug("Processing transfer operation from accountId={} to targetAccountId={}, amount={}",
                     message.getAccountId(), message.getTargetAccountId(), message.getAmount());
             //service notification
         } else {
             log.warn("Unknown operation type: {}", message.getOperationType());
         }
-        log.info("Message processing complete for accountId={}, operationType={}", message.getAccountId(), message.getOperationType());
+        log.debug("Message processing complete for accountId={}, operationType={}", message.getAccountId(), message.getOperationType());
     }
 }
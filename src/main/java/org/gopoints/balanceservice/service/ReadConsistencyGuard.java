@@ -0,0 +1,55 @@
+package org.gopoints.balanceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.ReplicaRoutingDataSource;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.ReadConsistency;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.function.Supplier;
+
+/**
+ * Decides whether an account read may be served by the replica. It goes to the primary when the
+ * caller asks for {@link ReadConsistency#STRONG} or when this instance changed the account within
+ * {@code balance.replica.recent-write-window}, so a client reading back its own change does not
+ * see the replica lag. Without a replica every read goes to the primary anyway.
+ */
+@Component
+public class ReadConsistencyGuard {
+
+    private final boolean enabled;
+    private final Cache<Long, Boolean> recentWrites;
+
+    public ReadConsistencyGuard(BalanceProperties balanceProperties) {
+        BalanceProperties.Replica replica = balanceProperties.getReplica();
+        this.enabled = replica.isEnabled();
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(replica.getRecentWriteWindow())
+                .build();
+    }
+
+    public <T> T read(Long accountId, ReadConsistency consistency, Supplier<T> read) {
+        if (enabled && (consistency == ReadConsistency.STRONG || recentWrites.getIfPresent(accountId) != null)) {
+            return ReplicaRoutingDataSource.onPrimary(read);
+        }
+        return read.get();
+    }
+
+    public void read(Long accountId, ReadConsistency consistency, Runnable read) {
+        read(accountId, consistency, () -> {
+            read.run();
+            return null;
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        if (enabled) {
+            recentWrites.put(event.accountId(), Boolean.TRUE);
+        }
+    }
+}
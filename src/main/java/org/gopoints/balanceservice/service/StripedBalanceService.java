@@ -0,0 +1,152 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountStripe;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.AccountStripeRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stripe rows of hot accounts. A striped account's balance is its own row plus the sum of its
+ * {@code account_stripes}; deposits credit one random stripe and withdrawals debit a stripe that
+ * holds enough on its own, so none of them locks the account row. Only when no single stripe is
+ * enough does the caller lock the account row, {@link #collapse} all stripes into it, debit it and
+ * {@link #spread} the rest back.
+ * <p>
+ * Changing the stripe count locks the account row and all of its stripes, so it can happen while
+ * the account is in use: operations that already hold a stripe finish first, and operations that
+ * find their stripe gone fall back to the account row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripedBalanceService {
+
+    private final AccountRepository accountRepository;
+    private final AccountStripeRepository accountStripeRepository;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties balanceProperties;
+
+    /**
+     * Stripe count of the account as last committed, read without a lock; 0 when the account is
+     * not striped, does not exist or striping checks are disabled.
+     */
+    public int stripes(Long accountId) {
+        if (!balanceProperties.getStriping().isEnabled()) {
+            return 0;
+        }
+        return accountRepository.findStripesById(accountId).orElse(0);
+    }
+
+    /**
+     * Credits a random one of the account's {@code stripes} and returns its number, or 0 when
+     * that stripe no longer exists because the account was re-striped meanwhile.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int credit(Long accountId, int stripes, Money amount) {
+        int stripe = 1 + ThreadLocalRandom.current().nextInt(stripes);
+        int updated = balanceMetrics.timeLockAcquisition("striped",
+                () -> accountStripeRepository.incrementBalance(accountId, stripe, amount.toBigDecimal()));
+        if (updated == 0) {
+            return 0;
+        }
+        balanceMetrics.trackLockHold("striped");
+        return stripe;
+    }
+
+    /**
+     * Debits one stripe holding at least {@code amount} and returns its number, or 0 when no
+     * single stripe holds enough.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int debit(Long accountId, Money amount) {
+        List<Integer> candidates = new ArrayList<>(
+                accountStripeRepository.findStripesHolding(accountId, amount.toBigDecimal()));
+        while (!candidates.isEmpty()) {
+            int stripe = candidates.remove(ThreadLocalRandom.current().nextInt(candidates.size()));
+            int updated = balanceMetrics.timeLockAcquisition("striped",
+                    () -> accountStripeRepository.decrementBalanceIfSufficient(accountId, stripe, amount.toBigDecimal()));
+            if (updated > 0) {
+                balanceMetrics.trackLockHold("striped");
+                return stripe;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Locks every stripe of the account, whose row the caller already holds locked, and moves
+     * their balances into the account row. Returns the locked stripes for {@link #spread}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<AccountStripe> collapse(Account account) {
+        List<AccountStripe> stripes = balanceMetrics.timeLockAcquisition("striped",
+                () -> accountStripeRepository.findAllByAccountIdWithLock(account.getId()));
+        balanceMetrics.trackLockHold("striped");
+        Money total = account.getBalance();
+        for (AccountStripe stripe : stripes) {
+            total = total.plus(stripe.getBalance());
+            stripe.setBalance(Money.ZERO);
+        }
+        account.setBalance(total);
+        return stripes;
+    }
+
+    /**
+     * Moves the account row's balance evenly onto the given stripes; the first stripes take the
+     * cents that do not divide evenly.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void spread(Account account, List<AccountStripe> stripes) {
+        if (stripes.isEmpty()) {
+            return;
+        }
+        long cents = account.getBalance().cents();
+        long share = cents / stripes.size();
+        long remainder = cents % stripes.size();
+        for (int i = 0; i < stripes.size(); i++) {
+            AccountStripe stripe = stripes.get(i);
+            stripe.setBalance(stripe.getBalance().plus(Money.ofCents(share + (i < remainder ? 1 : 0))));
+        }
+        account.setBalance(Money.ZERO);
+    }
+
+    /**
+     * Switches the locked account to {@code count} stripes, or back to a plain account for 0.
+     * The whole balance is collected from the old stripes and spread over the new ones.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void restripe(Account account, int count) {
+        int maxStripes = balanceProperties.getStriping().getMaxStripes();
+        if (count < 0 || count > maxStripes) {
+            throw new IllegalArgumentException("Stripe count must be between 0 and " + maxStripes);
+        }
+        List<AccountStripe> existing = collapse(account);
+        List<AccountStripe> kept = new ArrayList<>(count);
+        List<AccountStripe> removed = new ArrayList<>();
+        for (AccountStripe stripe : existing) {
+            (stripe.getStripe() <= count ? kept : removed).add(stripe);
+        }
+        accountStripeRepository.deleteAll(removed);
+        for (int stripe = kept.size() + 1; stripe <= count; stripe++) {
+            kept.add(accountStripeRepository.save(AccountStripe.builder()
+                    .accountId(account.getId())
+                    .stripe(stripe)
+                    .balance(Money.ZERO)
+                    .build()));
+        }
+        spread(account, kept);
+        account.setStripes(count);
+        log.info("Account {} now has {} stripes", account.getId(), count);
+    }
+}
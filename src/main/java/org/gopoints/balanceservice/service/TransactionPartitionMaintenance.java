@@ -0,0 +1,125 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the monthly partitions of {@code transactions} in shape on PostgreSQL: makes sure the
+ * current month and the next {@code months-ahead} months have their own partition, so rows do not
+ * pile up in the default partition, and detaches partitions older than {@code retain-months}.
+ * A detached partition stays in the database as a plain table named {@code transactions_YYYY_MM}
+ * and can be dumped or dropped from there. Does nothing on other databases or when the table is
+ * not partitioned.
+ */
+@Component
+@Slf4j
+public class TransactionPartitionMaintenance {
+
+    private static final String TABLE = "transactions";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid"
+                    + " WHERE c.relname = ? AND pg_table_is_visible(c.oid))";
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                    + " JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ? AND pg_table_is_visible(p.oid)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BalanceProperties.Partitions properties;
+
+    private volatile Boolean partitioned;
+
+    public TransactionPartitionMaintenance(JdbcTemplate jdbcTemplate, BalanceProperties balanceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = balanceProperties.getPartitions();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${balance.partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!properties.isMaintenanceEnabled() || !isPartitioned()) {
+            return;
+        }
+        Set<String> attached = new HashSet<>(jdbcTemplate.queryForList(PARTITIONS_SQL, String.class, TABLE));
+        YearMonth current = YearMonth.now();
+
+        for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!attached.contains(partitionName(month))) {
+                createPartition(month);
+            }
+        }
+
+        if (properties.getRetainMonths() > 0) {
+            YearMonth oldestKept = current.minusMonths(properties.getRetainMonths() - 1L);
+            for (String name : attached) {
+                YearMonth month = parseMonth(name);
+                if (month != null && month.isBefore(oldestKept)) {
+                    detachPartition(name);
+                }
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            log.info("Created partition {}", name);
+        } catch (DataAccessException e) {
+            // typically rows for that month already sit in the default partition
+            log.warn("Could not create partition {}: {}", name, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void detachPartition(String name) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            log.info("Detached partition {} for archiving", name);
+        } catch (DataAccessException e) {
+            log.warn("Could not detach partition {}: {}", name, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equals(product)
+                    && Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class, TABLE));
+            partitioned = result;
+        }
+        return result;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return TABLE + "_" + month.format(SUFFIX);
+    }
+
+    private static YearMonth parseMonth(String partitionName) {
+        if (!partitionName.matches(TABLE + "_\\d{4}_\\d{2}")) {
+            return null;
+        }
+        return YearMonth.parse(partitionName.substring(TABLE.length() + 1), SUFFIX);
+    }
+}
@@ -0,0 +1,77 @@
+package org.gopoints.balanceservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs an action in a new transaction and retries it when the database aborts it because of a
+ * deadlock, a lock timeout or a serialization/optimistic-lock conflict. Backoff grows
+ * exponentially and uses full jitter so that the losers of a deadlock do not collide again.
+ * <p>
+ * When called inside an existing transaction the action simply joins it and is not retried,
+ * since the outer transaction is already marked for rollback at that point.
+ */
+@Component
+@Slf4j
+public class TransactionRetrier {
+
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceMetrics balanceMetrics;
+    private final BalanceProperties.Retry properties;
+
+    public TransactionRetrier(PlatformTransactionManager transactionManager,
+                              BalanceMetrics balanceMetrics,
+                              BalanceProperties balanceProperties) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceMetrics = balanceMetrics;
+        this.properties = balanceProperties.getRetry();
+    }
+
+    public void execute(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        int attempt = 1;
+        while (true) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= properties.getMaxAttempts()) {
+                    balanceMetrics.transactionRetriesExhausted(operation).increment();
+                    throw e;
+                }
+                balanceMetrics.transactionRetries(operation, e.getClass().getSimpleName()).increment();
+                log.warn("{} aborted by {} (attempt {}/{}), retrying", operation, e.getClass().getSimpleName(),
+                        attempt, properties.getMaxAttempts());
+                backoff(attempt);
+                attempt++;
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(properties.getMaxBackoff().toMillis(),
+                properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.gopoints.balanceservice.config;
+
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryRabbitMessageConverterTest {
+
+    private final MessageConverter converter = new BinaryRabbitMessageConverter();
+
+    @Test
+    void roundTripsEveryOperation() {
+        for (RabbitMessage message : new RabbitMessage[]{
+                new RabbitMessage(1L, Money.valueOf("100.00"), "deposit", null),
+                new RabbitMessage(Long.MAX_VALUE, Money.valueOf("0.01"), "withdraw", null),
+                new RabbitMessage(42L, Money.valueOf("-12.34"), "transfer", 43L),
+                new RabbitMessage(7L, Money.ofCents(Long.MIN_VALUE), "refund", null),
+                new RabbitMessage(null, null, null, null)}) {
+            Message amqpMessage = converter.toMessage(message, new MessageProperties());
+
+            assertEquals(BinaryRabbitMessageConverter.CONTENT_TYPE, amqpMessage.getMessageProperties().getContentType());
+            assertEquals(message, converter.fromMessage(amqpMessage));
+        }
+    }
+
+    @Test
+    void depositFitsInNineBytes() {
+        byte[] body = converter.toMessage(new RabbitMessage(123_456L, Money.valueOf("100.00"), "deposit", null),
+                new MessageProperties()).getBody();
+
+        assertEquals(9, body.length);
+    }
+
+    @Test
+    void rejectsUnknownVersionAndTruncatedBody() {
+        byte[] body = converter.toMessage(new RabbitMessage(1L, Money.valueOf("5.00"), "deposit", null),
+                new MessageProperties()).getBody();
+        byte[] future = body.clone();
+        future[0] = 2;
+
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(future)));
+        assertThrows(MessageConversionException.class,
+                () -> converter.fromMessage(new Message(Arrays.copyOf(body, body.length - 1))));
+    }
+
+    @Test
+    void rejectsOperationNameLengthOutsideTheBody() {
+        // 2^32 + 1 would narrow to a length of 0 if it were cast to int before the range check
+        byte[] wrapsToZero = {BinaryRabbitMessageConverter.VERSION, 0, (byte) 0x81, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, 0x10, 0};
+        byte[] negative = {BinaryRabbitMessageConverter.VERSION, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 0};
+        byte[] tooLong = {BinaryRabbitMessageConverter.VERSION, 0, 5, 'a', 'b', 0};
+
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(wrapsToZero)));
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(negative)));
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(tooLong)));
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] body = converter.toMessage(new RabbitMessage(1L, Money.valueOf("5.00"), "refund", null),
+                new MessageProperties()).getBody();
+        byte[] padded = Arrays.copyOf(body, body.length + 1);
+
+        assertEquals(new RabbitMessage(1L, Money.valueOf("5.00"), "refund", null),
+                converter.fromMessage(new Message(body)));
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(new Message(padded)));
+    }
+
+    @Test
+    void applicationConverterReadsBothFormats() {
+        RabbitMessage message = new RabbitMessage(2L, Money.valueOf("500"), "transfer", 3L);
+        BalanceProperties properties = new BalanceProperties();
+        MessageConverter jsonProducer = new RabbitMqConfig().messageConverter(properties);
+        properties.getEvents().setWireFormat(BalanceProperties.WireFormat.BINARY);
+        MessageConverter binaryProducer = new RabbitMqConfig().messageConverter(properties);
+
+        Message json = jsonProducer.toMessage(message, new MessageProperties());
+        Message binary = binaryProducer.toMessage(message, new MessageProperties());
+
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, json.getMessageProperties().getContentType());
+        assertTrue(binary.getBody().length < json.getBody().length);
+        assertEquals(message, binaryProducer.fromMessage(json));
+        assertEquals(message, jsonProducer.fromMessage(binary));
+    }
+}
@@ -0,0 +1,83 @@
+package org.gopoints.balanceservice.config;
+
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.ReadConsistency;
+import org.gopoints.balanceservice.service.ReadConsistencyGuard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and the replica; each knows its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource routing = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(database("primary"), database("replica")));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        jdbcTemplate = new JdbcTemplate(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        assertEquals("replica", readOnly.execute(status -> node()));
+    }
+
+    @Test
+    void writesAndNonTransactionalReadsUsePrimary() {
+        assertEquals("primary", readWrite.execute(status -> node()));
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void onPrimaryOverridesReadOnly() {
+        assertEquals("primary", ReplicaRoutingDataSource.onPrimary(() -> readOnly.execute(status -> node())));
+        assertEquals("replica", readOnly.execute(status -> node()));
+    }
+
+    @Test
+    void guardSendsStrongAndRecentlyChangedReadsToPrimary() {
+        BalanceProperties properties = new BalanceProperties();
+        properties.getReplica().setEnabled(true);
+        ReadConsistencyGuard guard = new ReadConsistencyGuard(properties);
+
+        assertEquals("replica", guard.read(1L, ReadConsistency.EVENTUAL, () -> readOnly.execute(status -> node())));
+        assertEquals("primary", guard.read(1L, ReadConsistency.STRONG, () -> readOnly.execute(status -> node())));
+
+        guard.onBalanceChanged(new BalanceChangedEvent(1L, 1, Money.valueOf("10.00"), 2));
+        assertEquals("primary", guard.read(1L, ReadConsistency.EVENTUAL, () -> readOnly.execute(status -> node())));
+        assertEquals("replica", guard.read(2L, ReadConsistency.EVENTUAL, () -> readOnly.execute(status -> node())));
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
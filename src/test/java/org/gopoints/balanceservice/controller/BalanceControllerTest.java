@@ -1,9 +1,17 @@
 package org.gopoints.balanceservice.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import org.gopoints.balanceservice.BalanceServiceApplication;
 import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.BalanceSnapshotRepository;
+import org.gopoints.balanceservice.repository.DailyBalanceRollupRepository;
+import org.gopoints.balanceservice.repository.PostingRepository;
 import org.gopoints.balanceservice.repository.TransactionRepository;
 import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.service.IdempotencyService;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer;
@@ -12,17 +20,23 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import org.springframework.web.server.ResponseStatusException;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,6 +56,15 @@ public class BalanceControllerTest {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private DailyBalanceRollupRepository rollupRepository;
+
     private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.2")
             .withDatabaseName("testdb")
             .withUsername("testuser")
@@ -53,6 +76,10 @@ public class BalanceControllerTest {
         registry.add("spring.datasource.url", postgres::getJdbcUrl);
         registry.add("spring.datasource.username", postgres::getUsername);
         registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
     }
 
     private Long accountId;
@@ -61,36 +88,39 @@ public class BalanceControllerTest {
     @BeforeEach
     void setUp() {
         transactionRepository.deleteAll();
+        postingRepository.deleteAll();
+        balanceSnapshotRepository.deleteAll();
+        rollupRepository.deleteAll();
         accountRepository.deleteAll();
 
         Account account = new Account();
         account.setUserId(111);
-        account.setBalance(BigDecimal.valueOf(1000));
+        account.setBalance(Money.valueOf("1000"));
         account = accountRepository.save(account);
         accountId = account.getId();
 
         Account toAccount = new Account();
         toAccount.setUserId(222);
-        toAccount.setBalance(BigDecimal.valueOf(500));
+        toAccount.setBalance(Money.valueOf("500"));
         toAccount = accountRepository.save(toAccount);
         toAccountId = toAccount.getId();
     }
 
     @Test
     void testDeposit() throws Exception {
-        BigDecimal amount = BigDecimal.valueOf(500);
+        Money amount = Money.valueOf("500");
 
         mockMvc.perform(post("/accounts/{accountId}/deposit", accountId)
                         .param("amount", amount.toString()))
                 .andExpect(status().isOk());
 
         Account updatedAccount = accountRepository.findById(accountId).orElseThrow();
-        Assertions.assertEquals(new BigDecimal("1500.00"), updatedAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("1500.00"), updatedAccount.getBalance());
     }
 
     @Test
     void testDepositNegativeAmount() throws Exception {
-        BigDecimal amount = BigDecimal.valueOf(-100); // Невозможный депозит
+        Money amount = Money.valueOf("-100"); // Невозможный депозит
 
         mockMvc.perform(post("/accounts/{accountId}/deposit", accountId)
                         .param("amount", amount.toString()))
@@ -101,19 +131,19 @@ public class BalanceControllerTest {
 
     @Test
     void testWithdraw() throws Exception {
-        BigDecimal amount = BigDecimal.valueOf(100);
+        Money amount = Money.valueOf("100");
 
         mockMvc.perform(post("/accounts/{accountId}/withdraw", accountId)
                         .param("amount", amount.toString()))
                 .andExpect(status().isOk());
 
         Account updatedAccount = accountRepository.findById(accountId).orElseThrow();
-        Assertions.assertEquals(new BigDecimal("900.00"), updatedAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("900.00"), updatedAccount.getBalance());
     }
 
     @Test
     void testTransfer() throws Exception {
-        BigDecimal amount = BigDecimal.valueOf(200);
+        Money amount = Money.valueOf("200");
 
         mockMvc.perform(post("/accounts/transfer")
                         .param("fromAccountId", accountId.toString())
@@ -125,8 +155,65 @@ public class BalanceControllerTest {
         Account updatedFromAccount = accountRepository.findById(accountId).orElseThrow();
         Account updatedToAccount = accountRepository.findById(toAccountId).orElseThrow();
 
-        Assertions.assertEquals(new BigDecimal("800.00"), updatedFromAccount.getBalance());
-        Assertions.assertEquals(new BigDecimal("700.00"), updatedToAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("800.00"), updatedFromAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("700.00"), updatedToAccount.getBalance());
+    }
+
+    @Test
+    void testIdempotentDeposit() throws Exception {
+        String key = UUID.randomUUID().toString();
+
+        mockMvc.perform(post("/accounts/{accountId}/deposit", accountId)
+                        .header(IdempotencyService.HEADER, key)
+                        .param("amount", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "false"));
+        // повтор с тем же ключом не зачисляет сумму второй раз
+        mockMvc.perform(post("/accounts/{accountId}/deposit", accountId)
+                        .header(IdempotencyService.HEADER, key)
+                        .param("amount", "50.00"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"));
+        // тот же ключ для другой суммы
+        mockMvc.perform(post("/accounts/{accountId}/deposit", accountId)
+                        .header(IdempotencyService.HEADER, key)
+                        .param("amount", "60"))
+                .andExpect(status().isUnprocessableEntity());
+
+        Account updatedAccount = accountRepository.findById(accountId).orElseThrow();
+        Assertions.assertEquals(Money.valueOf("1050.00"), updatedAccount.getBalance());
+    }
+
+    @Test
+    void testBatchReportsEveryOperation() throws Exception {
+        String request = """
+                {"operations": [
+                  {"type": "DEPOSIT", "accountId": %1$d, "amount": 100},
+                  {"type": "WITHDRAW", "accountId": %2$d, "amount": 5000},
+                  {"type": "DEPOSIT", "accountId": 999999, "amount": 10},
+                  {"type": "TRANSFER", "accountId": %1$d, "toAccountId": %2$d, "amount": 300}
+                ]}""".formatted(accountId, toAccountId);
+
+        mockMvc.perform(post("/accounts/operations/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.results[*].status").value(
+                        Matchers.contains("OK", "INSUFFICIENT_FUNDS", "ACCOUNT_NOT_FOUND", "OK")))
+                .andExpect(jsonPath("$.results[3].balance").value(800.00));
+
+        Assertions.assertEquals(Money.valueOf("800.00"), accountRepository.findById(accountId).orElseThrow().getBalance());
+        Assertions.assertEquals(Money.valueOf("800.00"), accountRepository.findById(toAccountId).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testEmptyBatchIsRejected() throws Exception {
+        mockMvc.perform(post("/accounts/operations/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\": []}"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -151,4 +238,97 @@ public class BalanceControllerTest {
                         .param("endDate", endDate.toString()))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void testTransactionsPageWalksRowsWithEqualTimestamps() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 12, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(transactionRepository.save(Transaction.builder()
+                    .accountId(accountId)
+                    .amount(Money.valueOf("10"))
+                    .operationType("DEPOSIT")
+                    .timestamp(timestamp)
+                    .build()).getId());
+        }
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/accounts/{accountId}/transactions/page", accountId)
+                    .param("startDate", timestamp.minusDays(1).toString())
+                    .param("endDate", timestamp.plusDays(1).toString())
+                    .param("limit", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            List<Number> pageIds = JsonPath.read(body, "$.items[*].id");
+            pageIds.forEach(id -> seen.add(id.longValue()));
+            cursor = JsonPath.read(body, "$.nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        Assertions.assertEquals(ids, seen);
+        Assertions.assertEquals(3, pages);
+    }
+
+    @Test
+    void testTransactionsPageHasNoCursorWhenLastPageIsFull() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 12, 0);
+        for (int i = 0; i < 2; i++) {
+            transactionRepository.save(Transaction.builder()
+                    .accountId(accountId)
+                    .amount(Money.valueOf("10"))
+                    .operationType("DEPOSIT")
+                    .timestamp(timestamp)
+                    .build());
+        }
+
+        mockMvc.perform(get("/accounts/{accountId}/transactions/page", accountId)
+                        .param("startDate", timestamp.minusDays(1).toString())
+                        .param("endDate", timestamp.plusDays(1).toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void testTransactionsPageRejectsMalformedCursor() throws Exception {
+        for (String cursor : new String[]{"not base64!", "Z2FyYmFnZQ", "MjAyNC0wMy0wMVQxMjowMHxhYmM"}) {
+            mockMvc.perform(get("/accounts/{accountId}/transactions/page", accountId)
+                            .param("startDate", "2024-02-29T00:00:00")
+                            .param("endDate", "2024-03-02T00:00:00")
+                            .param("cursor", cursor))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void testReactiveDeposit() throws Exception {
+        MvcResult result = mockMvc.perform(post("/reactive/accounts/{accountId}/deposit", accountId)
+                        .param("amount", "250"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        Account updatedAccount = accountRepository.findById(accountId).orElseThrow();
+        Assertions.assertEquals(Money.valueOf("1250.00"), updatedAccount.getBalance());
+    }
+
+    @Test
+    void testReactiveGetBalance() throws Exception {
+        MvcResult result = mockMvc.perform(get("/reactive/accounts/{accountId}/balance", accountId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(accountId))
+                .andExpect(jsonPath("$.balance").value(1000.00));
+    }
 }
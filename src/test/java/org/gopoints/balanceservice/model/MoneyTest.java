@@ -0,0 +1,127 @@
+package org.gopoints.balanceservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parsesSignsAndPartialDecimals() {
+        assertEquals(5_000, Money.valueOf("50").cents());
+        assertEquals(5_000, Money.valueOf("+50").cents());
+        assertEquals(-350, Money.valueOf("-3.5").cents());
+        assertEquals(1_234, Money.valueOf("12.34").cents());
+        assertEquals(50, Money.valueOf(".5").cents());
+        assertEquals(-5, Money.valueOf("-.05").cents());
+        assertEquals(100, Money.valueOf("1.").cents());
+        assertSame(Money.ZERO, Money.valueOf("-0.00"));
+    }
+
+    @Test
+    void parsesASliceOfABuffer() {
+        char[] buffer = "[12.34,-0.05]".toCharArray();
+
+        assertEquals(Money.ofCents(1_234), Money.valueOf(buffer, 1, 5));
+        assertEquals(Money.ofCents(-5), Money.valueOf(buffer, 7, 5));
+    }
+
+    @Test
+    void rejectsMalformedAmounts() {
+        for (String text : new String[]{"", "-", "+", ".", "-.", "1.234", "0.001", "1e3", "1E3", " 1", "1 ",
+                "1,00", "--1", "1.2.3", "0x10", "NaN"}) {
+            assertThrows(IllegalArgumentException.class, () -> Money.valueOf(text), text);
+        }
+    }
+
+    @Test
+    void parsesTheFullLongRangeAndRejectsAnythingBeyond() {
+        assertEquals(Long.MAX_VALUE, Money.valueOf("92233720368547758.07").cents());
+        assertEquals(Long.MIN_VALUE, Money.valueOf("-92233720368547758.08").cents());
+
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("92233720368547758.08"));
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("-92233720368547758.09"));
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("92233720368547759"));
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("100000000000000000000"));
+    }
+
+    @Test
+    void arithmeticFailsInsteadOfWrappingAround() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+        Money min = Money.ofCents(Long.MIN_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> min.minus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, min::negate);
+        assertEquals(Money.ofCents(Long.MAX_VALUE - 1), max.minus(Money.ofCents(1)));
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("0.00", Money.ZERO.toString());
+        assertEquals("0.05", Money.ofCents(5).toString());
+        assertEquals("-0.05", Money.ofCents(-5).toString());
+        assertEquals("-0.50", Money.ofCents(-50).toString());
+        assertEquals("-1.00", Money.ofCents(-100).toString());
+        assertEquals("1234.56", Money.ofCents(123_456).toString());
+        assertEquals("92233720368547758.07", Money.ofCents(Long.MAX_VALUE).toString());
+        assertEquals("-92233720368547758.08", Money.ofCents(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    void convertsToAndFromBigDecimal() {
+        assertEquals(new BigDecimal("-0.05"), Money.ofCents(-5).toBigDecimal());
+        assertEquals(Money.ofCents(150), Money.of(new BigDecimal("1.500")));
+        assertEquals(Money.ofCents(100), Money.of(BigDecimal.ONE));
+
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1E+20")));
+    }
+
+    @Test
+    void roundTripsThroughJson() throws Exception {
+        for (long cents : new long[]{0, 5, -5, -50, 123_456, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Money money = Money.ofCents(cents);
+            String json = objectMapper.writeValueAsString(money);
+
+            assertEquals(money.toString(), json);
+            assertEquals(money, objectMapper.readValue(json, Money.class));
+        }
+    }
+
+    @Test
+    void readsJsonNumbersAndStrings() throws Exception {
+        assertEquals(Money.ofCents(5_000), objectMapper.readValue("50", Money.class));
+        assertEquals(Money.ofCents(-350), objectMapper.readValue("-3.5", Money.class));
+        assertEquals(Money.ofCents(1_234), objectMapper.readValue("\"12.34\"", Money.class));
+
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("1.234", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("1e3", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"\"", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"-\"", Money.class));
+    }
+
+    @Test
+    void roundTripsThroughTheJpaConverter() {
+        MoneyConverter converter = new MoneyConverter();
+
+        for (long cents : new long[]{0, 5, -5, 123_456, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Money money = Money.ofCents(cents);
+            BigDecimal column = converter.convertToDatabaseColumn(money);
+
+            assertEquals(2, column.scale());
+            assertEquals(money, converter.convertToEntityAttribute(column));
+        }
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
@@ -0,0 +1,38 @@
+package org.gopoints.balanceservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionCursorTest {
+
+    @Test
+    void roundTripsThroughItsToken() {
+        for (TransactionCursor cursor : new TransactionCursor[]{
+                new TransactionCursor(LocalDateTime.of(2024, 3, 1, 12, 0), 1L),
+                new TransactionCursor(LocalDateTime.of(2024, 3, 1, 12, 0, 5, 123_456_000), Long.MAX_VALUE)}) {
+            String token = cursor.encode();
+
+            assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+            assertEquals(cursor, TransactionCursor.decode(token));
+        }
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        for (String token : new String[]{"", "not base64!", encode("2024-03-01T12:00"), encode("2024-03-01T12:00|"),
+                encode("2024-03-01T12:00|abc"), encode("yesterday|1"), encode("|1")}) {
+            assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode(token), token);
+        }
+    }
+
+    private static String encode(String text) {
+        return Base64.getUrlEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,155 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlTest {
+
+    private BalanceProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BalanceProperties();
+        BalanceProperties.Admission admission = properties.getAdmission();
+        admission.setEnabled(true);
+        admission.setPerAccountLimit(2);
+        admission.setInitialLimit(4);
+        admission.setMinLimit(2);
+        admission.setMaxLimit(10);
+        admission.setLatencyTarget(Duration.ofMillis(50));
+        admission.setRetryAfter(Duration.ofMillis(1500));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private AdmissionControl admissionControl() {
+        return new AdmissionControl(properties, new BalanceMetrics(meterRegistry));
+    }
+
+    private double count(String outcome, String reason) {
+        return meterRegistry.get("balance.admission.requests")
+                .tag("outcome", outcome).tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void rejectsBeyondPerAccountLimitAndReleasesOnClose() {
+        AdmissionControl admissionControl = admissionControl();
+
+        AdmissionControl.Permit first = admissionControl.acquire(1L);
+        AdmissionControl.Permit second = admissionControl.acquire(1L);
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admissionControl.acquire(1L));
+        assertEquals(2, rejected.getRetryAfterSeconds());
+        // other accounts are not affected, and a failed transfer admission gives back what it took
+        admissionControl.acquire(2L).close();
+        assertThrows(AdmissionRejectedException.class, () -> admissionControl.acquire(2L, 1L));
+        assertEquals(2, admissionControl.inFlight());
+
+        first.close();
+        first.close();
+        admissionControl.acquire(1L).close();
+        second.close();
+
+        assertEquals(0, admissionControl.inFlight());
+        assertEquals(4, count("admitted", "none"));
+        assertEquals(2, count("rejected", "account"));
+        assertEquals(admissionControl.limit(), meterRegistry.get("balance.admission.limit").gauge().value());
+    }
+
+    @Test
+    void globalLimitShrinksOnSlowCompletionsAndGrowsOnFastOnes() throws InterruptedException {
+        AdmissionControl admissionControl = admissionControl();
+
+        AdmissionControl.Permit[] permits = new AdmissionControl.Permit[4];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = admissionControl.acquire((long) i);
+        }
+        assertThrows(AdmissionRejectedException.class, () -> admissionControl.acquire(99L));
+        assertEquals(1, count("rejected", "global"));
+
+        Thread.sleep(60);
+        for (AdmissionControl.Permit permit : permits) {
+            permit.close();
+        }
+        // the four saw the same slowdown: one decrease
+        assertEquals(3.6, admissionControl.limit(), 1e-9);
+
+        // a change admitted after that decrease and still slow backs off again
+        AdmissionControl.Permit slow = admissionControl.acquire(1L);
+        Thread.sleep(60);
+        slow.close();
+        assertEquals(3.24, admissionControl.limit(), 1e-9);
+
+        // fast completions raise it again, but only while at least half of it is in use
+        for (int round = 0; round < 20; round++) {
+            AdmissionControl.Permit a = admissionControl.acquire(1L);
+            AdmissionControl.Permit b = admissionControl.acquire(2L);
+            a.close();
+            b.close();
+        }
+        assertTrue(admissionControl.limit() > 3.9 && admissionControl.limit() < 4.3,
+                "limit " + admissionControl.limit());
+    }
+
+    @Test
+    void burstOfConcurrentSlowCompletionsDecreasesLimitOnce() throws Exception {
+        properties.getAdmission().setInitialLimit(60);
+        properties.getAdmission().setMaxLimit(100);
+        AdmissionControl admissionControl = admissionControl();
+
+        AdmissionControl.Permit[] permits = new AdmissionControl.Permit[50];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = admissionControl.acquire((long) i);
+        }
+        Thread.sleep(60);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> closes = new ArrayList<>();
+            for (AdmissionControl.Permit permit : permits) {
+                closes.add(executor.submit(() -> {
+                    start.await();
+                    permit.close();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> close : closes) {
+                close.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, admissionControl.inFlight());
+        assertEquals(54.0, admissionControl.limit(), 1e-9);
+    }
+
+    @Test
+    void admitsEverythingWhenDisabled() {
+        properties.getAdmission().setEnabled(false);
+        AdmissionControl admissionControl = admissionControl();
+
+        for (int i = 0; i < 10; i++) {
+            admissionControl.acquire(1L);
+        }
+
+        assertEquals(0, admissionControl.inFlight());
+    }
+}
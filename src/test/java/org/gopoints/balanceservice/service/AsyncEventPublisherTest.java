@@ -0,0 +1,106 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.config.BalanceProperties.PublishMode;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class AsyncEventPublisherTest {
+
+    private static final RabbitMessage DEPOSIT = new RabbitMessage(1L, Money.valueOf("10"), "deposit", null);
+    private static final RabbitMessage WITHDRAW = new RabbitMessage(1L, Money.valueOf("5"), "withdraw", null);
+
+    @Mock
+    private RabbitMQService rabbitMqService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncEventPublisher asyncEventPublisher;
+    private BalanceEventPublisher balanceEventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        BalanceProperties properties = new BalanceProperties();
+        properties.getEvents().setMode(PublishMode.AFTER_COMMIT);
+        properties.getAsyncEvents().setWindow(Duration.ofMillis(50));
+
+        meterRegistry = new SimpleMeterRegistry();
+        BalanceMetrics balanceMetrics = new BalanceMetrics(meterRegistry);
+        asyncEventPublisher = new AsyncEventPublisher(rabbitMqService, balanceMetrics, properties);
+        asyncEventPublisher.start();
+        balanceEventPublisher = new BalanceEventPublisher(rabbitMqService, outboxService, properties,
+                balanceMetrics, asyncEventPublisher);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        TransactionSynchronizationManager.clearSynchronization();
+        asyncEventPublisher.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishesTransactionEventsInOneBatchAfterCommit() {
+        balanceEventPublisher.publish(DEPOSIT);
+        balanceEventPublisher.publish(WITHDRAW);
+
+        verify(rabbitMqService, never()).sendBatch(anyList(), any());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        ArgumentCaptor<List<RabbitMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(rabbitMqService, timeout(2000)).sendBatch(captor.capture(), any());
+        assertEquals(List.of(DEPOSIT, WITHDRAW), captor.getValue());
+    }
+
+    @Test
+    void publishesNothingAfterRollback() throws InterruptedException {
+        balanceEventPublisher.publish(DEPOSIT);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        Thread.sleep(200);
+        verify(rabbitMqService, never()).sendBatch(anyList(), any());
+    }
+
+    @Test
+    void countsEventsOfFailedBatchAsDropped() throws InterruptedException {
+        doThrow(new AmqpException("broker down")).when(rabbitMqService).sendBatch(anyList(), any());
+
+        asyncEventPublisher.submit(List.of(DEPOSIT, WITHDRAW));
+
+        verify(rabbitMqService, timeout(2000)).sendBatch(anyList(), any());
+        // counted by the publisher thread right after the failed send
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (meterRegistry.find("balance.events.dropped").counter() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2.0, meterRegistry.get("balance.events.dropped").tag("reason", "publish_failed").counter().count());
+    }
+}
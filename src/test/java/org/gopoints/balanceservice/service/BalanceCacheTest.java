@@ -0,0 +1,124 @@
+package org.gopoints.balanceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.gopoints.balanceservice.dto.AccountDto;
+import org.gopoints.balanceservice.mapper.BalanceMapperImpl;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BalanceCacheTest {
+
+    private static final Long ACCOUNT_ID = 1L;
+
+    @Mock
+    private BalanceService balanceService;
+
+    private BalanceCache balanceCache;
+
+    @BeforeEach
+    void setUp() {
+        Cache<Long, BalanceCache.CachedBalance> cache = Caffeine.newBuilder().build();
+        balanceCache = new BalanceCache(cache, balanceService, new BalanceMapperImpl());
+    }
+
+    @Test
+    void missIsLoadedOnceAndThenServedFromCache() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("100", 1));
+
+        assertEquals(Money.valueOf("100"), balanceCache.get(ACCOUNT_ID).balance());
+        assertEquals(Money.valueOf("100"), balanceCache.get(ACCOUNT_ID).balance());
+
+        verify(balanceService, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    void olderUpdateDoesNotOverwriteNewerOne() {
+        balanceCache.onBalanceChanged(event("200", 5));
+        balanceCache.onBalanceChanged(event("150", 4));
+
+        assertEquals(new AccountDto(ACCOUNT_ID, 111, Money.valueOf("200")), balanceCache.get(ACCOUNT_ID));
+        verify(balanceService, never()).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    void loadDoesNotOverwriteNewerUpdateThatArrivedMeanwhile() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenAnswer(invocation -> {
+            balanceCache.onBalanceChanged(event("300", 4));
+            return account("100", 3);
+        });
+
+        assertEquals(Money.valueOf("100"), balanceCache.get(ACCOUNT_ID).balance());
+        assertEquals(Money.valueOf("300"), balanceCache.get(ACCOUNT_ID).balance());
+
+        verify(balanceService, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    void loadRacingAnInvalidationIsNotCached() {
+        when(balanceService.getAccount(ACCOUNT_ID))
+                .thenAnswer(invocation -> {
+                    // a striped or unread change commits while the stale row is being read
+                    balanceCache.onBalanceChanged(BalanceChangedEvent.unknown(ACCOUNT_ID));
+                    return account("100", 3);
+                })
+                .thenReturn(account("90", 4));
+
+        assertEquals(Money.valueOf("100"), balanceCache.get(ACCOUNT_ID).balance());
+        assertEquals(Money.valueOf("90"), balanceCache.get(ACCOUNT_ID).balance());
+        assertEquals(Money.valueOf("90"), balanceCache.get(ACCOUNT_ID).balance());
+
+        verify(balanceService, times(2)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    void unknownBalanceInvalidatesCachedEntry() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("75", 7));
+        balanceCache.onBalanceChanged(event("50", 6));
+
+        balanceCache.onBalanceChanged(BalanceChangedEvent.unknown(ACCOUNT_ID));
+
+        assertEquals(Money.valueOf("75"), balanceCache.get(ACCOUNT_ID).balance());
+        verify(balanceService, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    @Test
+    void olderUpdateAfterUnknownBalanceIsNotCached() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("40", 9));
+        balanceCache.onBalanceChanged(event("50", 6));
+
+        balanceCache.onBalanceChanged(BalanceChangedEvent.unknown(ACCOUNT_ID));
+        // committed before the unknown change, but its after-commit hook ran late
+        balanceCache.onBalanceChanged(event("60", 7));
+
+        assertEquals(Money.valueOf("40"), balanceCache.get(ACCOUNT_ID).balance());
+        assertEquals(Money.valueOf("40"), balanceCache.get(ACCOUNT_ID).balance());
+        verify(balanceService, times(1)).getAccount(ACCOUNT_ID);
+    }
+
+    private static Account account(String balance, long version) {
+        Account account = new Account();
+        account.setId(ACCOUNT_ID);
+        account.setUserId(111);
+        account.setBalance(Money.valueOf(balance));
+        account.setVersion(version);
+        return account;
+    }
+
+    private static BalanceChangedEvent event(String balance, long version) {
+        return new BalanceChangedEvent(ACCOUNT_ID, 111, Money.valueOf(balance), version);
+    }
+}
@@ -1,12 +1,23 @@
 package org.gopoints.balanceservice.service;
 
 import org.gopoints.balanceservice.BalanceServiceApplication;
+import org.gopoints.balanceservice.config.BalanceProperties;
 import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.AccountStripe;
+import org.gopoints.balanceservice.dto.BalanceSummaryDto;
+import org.gopoints.balanceservice.dto.LedgerAuditDto;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.Posting;
 import org.gopoints.balanceservice.model.Transaction;
 import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
 import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
 import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.AccountStripeRepository;
+import org.gopoints.balanceservice.repository.BalanceSnapshotRepository;
+import org.gopoints.balanceservice.repository.DailyBalanceRollupRepository;
+import org.gopoints.balanceservice.repository.PostingRepository;
 import org.gopoints.balanceservice.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer;
@@ -25,9 +36,16 @@ import org.springframework.transaction.annotation.Transactional;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -47,9 +65,27 @@ public class BalanceServiceTest {
     @Autowired
     private BalanceService balanceService;
 
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private DailyBalanceRollupRepository rollupRepository;
+
+    @Autowired
+    private AccountStripeRepository accountStripeRepository;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
     private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.2")
             .withDatabaseName("testdb")
             .withUsername("testuser")
@@ -63,58 +99,82 @@ public class BalanceServiceTest {
         registry.add("spring.datasource.password", postgres::getPassword);
     }
 
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private BalanceRollupService balanceRollupService;
+
     private Long accountId;
     private Long toAccountId;
+    private int maxAttempts;
+    private BalanceProperties.LockingMode lockingMode;
+    private boolean striping;
 
     @BeforeEach
     void setUp() {
+        maxAttempts = balanceProperties.getRetry().getMaxAttempts();
+        lockingMode = balanceProperties.getLocking().getMode();
+        striping = balanceProperties.getStriping().isEnabled();
         transactionRepository.deleteAll();
+        postingRepository.deleteAll();
+        balanceSnapshotRepository.deleteAll();
+        rollupRepository.deleteAll();
+        accountStripeRepository.deleteAll();
         accountRepository.deleteAll();
 
         Account account = new Account();
         account.setUserId(111);
-        account.setBalance(BigDecimal.valueOf(1000));
+        account.setBalance(Money.valueOf("1000"));
         account = accountRepository.save(account);
         accountId = account.getId();
 
 
         Account toAccount = new Account();
         toAccount.setUserId(222); // ID целевого аккаунта
-        toAccount.setBalance(BigDecimal.valueOf(500));
+        toAccount.setBalance(Money.valueOf("500"));
         toAccount = accountRepository.save(toAccount);
         toAccountId = toAccount.getId();
 
         // Создание транзакций для тестов
         Transaction depositTransaction = new Transaction();
         depositTransaction.setAccountId(accountId);
-        depositTransaction.setAmount(BigDecimal.valueOf(1000));
+        depositTransaction.setAmount(Money.valueOf("1000"));
         depositTransaction.setOperationType("DEPOSIT");
         depositTransaction.setTimestamp(LocalDateTime.now());
         transactionRepository.save(depositTransaction);
 
         Transaction withdrawTransaction = new Transaction();
         withdrawTransaction.setAccountId(accountId);
-        withdrawTransaction.setAmount(BigDecimal.valueOf(200));
+        withdrawTransaction.setAmount(Money.valueOf("200"));
         withdrawTransaction.setOperationType("WITHDRAW");
         withdrawTransaction.setTimestamp(LocalDateTime.now());
         transactionRepository.save(withdrawTransaction);
     }
 
+    @AfterEach
+    void restoreProperties() {
+        balanceProperties.getLocking().getClasses().remove("retail");
+        balanceProperties.getRetry().setMaxAttempts(maxAttempts);
+        balanceProperties.getLocking().setMode(lockingMode);
+        balanceProperties.getStriping().setEnabled(striping);
+    }
+
     @Test
     @Transactional
     void testDeposit() {
-        BigDecimal depositAmount = BigDecimal.valueOf(500);
+        Money depositAmount = Money.valueOf("500");
 
         balanceService.deposit(accountId, depositAmount);
 
         Account updatedAccount = accountRepository.findByIdWithLock(accountId).orElseThrow();
-        Assertions.assertEquals(new BigDecimal("1500"), updatedAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("1500"), updatedAccount.getBalance());
     }
 
     @Test
     @Transactional
     void testDepositNegativeAmount() {
-        BigDecimal depositAmount = BigDecimal.valueOf(-500);  // Негативный депозит
+        Money depositAmount = Money.valueOf("-500");  // Негативный депозит
 
         assertThrows(IllegalArgumentException.class, () -> {
             balanceService.deposit(accountId, depositAmount);  // Метод должен выбросить исключение
@@ -125,7 +185,7 @@ public class BalanceServiceTest {
     @Transactional
     void testDepositAccountNotFound() {
         Long invalidAccountId = 999L;
-        BigDecimal depositAmount = BigDecimal.valueOf(500);
+        Money depositAmount = Money.valueOf("500");
 
         assertThrows(AccountNotFoundException.class, () -> {
             balanceService.deposit(invalidAccountId, depositAmount);  // Метод должен выбросить исключение
@@ -135,18 +195,18 @@ public class BalanceServiceTest {
     @Test
     @Transactional
     void testWithdraw() {
-        BigDecimal withdrawAmount = BigDecimal.valueOf(200);
+        Money withdrawAmount = Money.valueOf("200");
 
         balanceService.withdraw(accountId, withdrawAmount);
 
         Account updatedAccount = accountRepository.findByIdWithLock(accountId).orElseThrow();
-        Assertions.assertEquals(new BigDecimal("800"), updatedAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("800"), updatedAccount.getBalance());
     }
 
     @Test
     @Transactional
     void testWithdrawNegativeAmount() {
-        BigDecimal withdrawAmount = BigDecimal.valueOf(-200);  // Негативный вывод
+        Money withdrawAmount = Money.valueOf("-200");  // Негативный вывод
 
         assertThrows(IllegalArgumentException.class, () -> {
             balanceService.withdraw(accountId, withdrawAmount);  // Метод должен выбросить исключение
@@ -156,7 +216,7 @@ public class BalanceServiceTest {
     @Test
     @Transactional
     void testWithdrawInsufficientFunds() {
-        BigDecimal withdrawAmount = BigDecimal.valueOf(10000);  // Сумма превышает баланс
+        Money withdrawAmount = Money.valueOf("10000");  // Сумма превышает баланс
 
         assertThrows(InsufficientFundsException.class, () -> {
             balanceService.withdraw(accountId, withdrawAmount);  // Метод должен выбросить исключение
@@ -167,7 +227,7 @@ public class BalanceServiceTest {
     @Transactional
     void testWithdrawAccountNotFound() {
         Long invalidAccountId = 999L;  // Некорректный ID счета
-        BigDecimal withdrawAmount = BigDecimal.valueOf(200);
+        Money withdrawAmount = Money.valueOf("200");
 
         assertThrows(AccountNotFoundException.class, () -> {
             balanceService.withdraw(invalidAccountId, withdrawAmount);  // Метод должен выбросить исключение
@@ -177,7 +237,7 @@ public class BalanceServiceTest {
     @Test
     @Transactional
     void testTransfer() {
-        BigDecimal amount = BigDecimal.valueOf(200);
+        Money amount = Money.valueOf("200");
 
         // Выполняем перевод
         balanceService.transfer(accountId, toAccountId, amount);
@@ -186,14 +246,14 @@ public class BalanceServiceTest {
         Account updatedFromAccount = accountRepository.findByIdWithLock(accountId).orElseThrow(() -> new AccountNotFoundException("Account not found: " + accountId));
         Account updatedToAccount = accountRepository.findByIdWithLock(toAccountId).orElseThrow(() -> new AccountNotFoundException("Account not found: " + toAccountId));
 
-        Assertions.assertEquals(new BigDecimal("800"), updatedFromAccount.getBalance());
-        Assertions.assertEquals(new BigDecimal("700"), updatedToAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("800"), updatedFromAccount.getBalance());
+        Assertions.assertEquals(Money.valueOf("700"), updatedToAccount.getBalance());
     }
 
     @Test
     @Transactional
     void testTransferNegativeAmount() {
-        BigDecimal amount = BigDecimal.valueOf(-200);  // Негативный перевод
+        Money amount = Money.valueOf("-200");  // Негативный перевод
 
         assertThrows(IllegalArgumentException.class, () -> {
             balanceService.transfer(accountId, toAccountId, amount);  // Метод должен выбросить исключение
@@ -203,7 +263,7 @@ public class BalanceServiceTest {
     @Test
     @Transactional
     void testTransferInsufficientFunds() {
-        BigDecimal amount = BigDecimal.valueOf(10000);  // Сумма превышает баланс
+        Money amount = Money.valueOf("10000");  // Сумма превышает баланс
 
         assertThrows(InsufficientFundsException.class, () -> {
             balanceService.transfer(accountId, toAccountId, amount);  // Метод должен выбросить исключение
@@ -214,7 +274,7 @@ public class BalanceServiceTest {
     @Transactional
     void testTransferAccountNotFound() {
         Long invalidAccountId = 999L;  // Некорректный ID счета
-        BigDecimal amount = BigDecimal.valueOf(200);
+        Money amount = Money.valueOf("200");
 
         assertThrows(AccountNotFoundException.class, () -> {
             balanceService.transfer(invalidAccountId, toAccountId, amount);  // Метод должен выбросить исключение
@@ -227,7 +287,7 @@ public class BalanceServiceTest {
         LocalDateTime endDate = LocalDateTime.now();
 
         // Выполняем депозит или вывод, чтобы создать транзакцию
-        BigDecimal depositAmount = BigDecimal.valueOf(500);
+        Money depositAmount = Money.valueOf("500");
         balanceService.deposit(accountId, depositAmount);
 
         // Получаем транзакции за период
@@ -238,4 +298,206 @@ public class BalanceServiceTest {
         Assertions.assertTrue(transactions.stream().anyMatch(t -> "DEPOSIT".equals(t.getOperationType())));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    @Transactional
+    void testTransferPostsBothSides() {
+        balanceService.transfer(accountId, toAccountId, Money.valueOf("200"));
+
+        List<Posting> postings = postingRepository.findAll();
+        Assertions.assertEquals(2, postings.size());
+        Assertions.assertEquals(Money.ZERO, postings.stream().map(Posting::getAmount).reduce(Money.ZERO, Money::plus));
+        Assertions.assertTrue(postings.stream().anyMatch(p ->
+                toAccountId.equals(p.getAccountId()) && Money.valueOf("200").equals(p.getAmount())));
+    }
+
+    @Test
+    @Transactional
+    void testBalanceAtAndAudit() {
+        balanceService.deposit(accountId, Money.valueOf("500"));
+        Assertions.assertTrue(balanceSnapshotService.snapshot(accountId));
+        LocalDateTime beforeWithdraw = LocalDateTime.now();
+        balanceService.withdraw(accountId, Money.valueOf("300"));
+
+        Assertions.assertEquals(Money.valueOf("1500"), balanceSnapshotService.getBalanceAt(accountId, beforeWithdraw).balance());
+        Assertions.assertEquals(Money.valueOf("1200"), balanceSnapshotService.getBalanceAt(accountId, LocalDateTime.now()).balance());
+
+        LedgerAuditDto audit = balanceSnapshotService.audit(accountId);
+        Assertions.assertTrue(audit.consistent());
+        Assertions.assertEquals(Money.valueOf("1200"), audit.ledgerBalance());
+        Assertions.assertEquals(1, audit.postingsAfterSnapshot());
+    }
+
+    @Test
+    void testOptimisticLockingForAccountClass() throws Exception {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        account.setAccountClass("retail");
+        long version = accountRepository.saveAndFlush(account).getVersion();
+        balanceProperties.getLocking().getClasses().put("retail", BalanceProperties.LockingMode.OPTIMISTIC);
+        // Every deposit has to land, however many times it loses the race for the row
+        balanceProperties.getRetry().setMaxAttempts(1000);
+        double conflictsBefore = balanceMetrics.optimisticConflicts("retail").count();
+        double retriesBefore = balanceMetrics.transactionRetries("deposit", "ObjectOptimisticLockingFailureException").count();
+        double exhaustedBefore = balanceMetrics.transactionRetriesExhausted("deposit").count();
+
+        int threads = 8;
+        int depositsPerThread = 10;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < depositsPerThread; j++) {
+                        balanceService.deposit(accountId, Money.valueOf("10"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int deposits = threads * depositsPerThread;
+        Account updated = accountRepository.findById(accountId).orElseThrow();
+        Assertions.assertEquals(Money.valueOf("1800"), updated.getBalance());
+        Assertions.assertEquals(version + deposits, updated.getVersion());
+        double conflicts = balanceMetrics.optimisticConflicts("retail").count() - conflictsBefore;
+        double retries = balanceMetrics.transactionRetries("deposit", "ObjectOptimisticLockingFailureException").count() - retriesBefore;
+        Assertions.assertTrue(conflicts > 0, "concurrent deposits should have collided on the row version");
+        Assertions.assertEquals(conflicts, retries);
+        Assertions.assertEquals(exhaustedBefore, balanceMetrics.transactionRetriesExhausted("deposit").count());
+    }
+
+    @Test
+    void testConditionalUpdateMode() {
+        balanceProperties.getLocking().setMode(BalanceProperties.LockingMode.CONDITIONAL_UPDATE);
+
+        balanceService.deposit(accountId, Money.valueOf("500"));
+        balanceService.withdraw(accountId, Money.valueOf("300"));
+        balanceService.transfer(accountId, toAccountId, Money.valueOf("200"));
+        assertThrows(InsufficientFundsException.class, () -> balanceService.withdraw(accountId, Money.valueOf("1000.01")));
+        assertThrows(AccountNotFoundException.class, () -> balanceService.deposit(999L, Money.valueOf("10")));
+        assertThrows(AccountNotFoundException.class, () -> balanceService.withdraw(999L, Money.valueOf("10")));
+
+        Assertions.assertEquals(Money.valueOf("1000"), accountRepository.findById(accountId).orElseThrow().getBalance());
+        Assertions.assertEquals(Money.valueOf("700"), accountRepository.findById(toAccountId).orElseThrow().getBalance());
+        // only the three committed operations reached the ledger, next to the two rows from setUp
+        Assertions.assertEquals(5, transactionRepository.count());
+    }
+
+    @Test
+    void testConditionalUpdateNeverOverdraws() throws Exception {
+        balanceProperties.getLocking().setMode(BalanceProperties.LockingMode.CONDITIONAL_UPDATE);
+
+        int threads = 10;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int succeeded = 0;
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        balanceService.withdraw(accountId, Money.valueOf("150"));
+                        return true;
+                    } catch (InsufficientFundsException e) {
+                        return false;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                succeeded += future.get(60, TimeUnit.SECONDS) ? 1 : 0;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(6, succeeded);
+        Assertions.assertEquals(Money.valueOf("100"), accountRepository.findById(accountId).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testDailyRollupSummary() {
+        LocalDate today = LocalDate.now();
+        balanceService.deposit(accountId, Money.valueOf("500"));
+        balanceService.withdraw(accountId, Money.valueOf("200"));
+        balanceService.transfer(accountId, toAccountId, Money.valueOf("100"));
+        balanceService.deposit(accountId, Money.valueOf("0.50"));
+
+        BalanceSummaryDto summary = balanceRollupService.getSummary(accountId, today, today);
+        Assertions.assertEquals(Money.valueOf("1000"), summary.openingBalance());
+        Assertions.assertEquals(Money.valueOf("1200.50"), summary.closingBalance());
+        Assertions.assertEquals(Money.valueOf("500.50"), summary.depositTotal());
+        Assertions.assertEquals(2, summary.depositCount());
+        Assertions.assertEquals(Money.valueOf("200"), summary.withdrawTotal());
+        Assertions.assertEquals(1, summary.withdrawCount());
+        Assertions.assertEquals(Money.valueOf("100"), summary.transferOutTotal());
+        Assertions.assertEquals(1, summary.transferOutCount());
+
+        BalanceSummaryDto recipient = balanceRollupService.getSummary(toAccountId, today.minusDays(7), today);
+        Assertions.assertEquals(Money.valueOf("500"), recipient.openingBalance());
+        Assertions.assertEquals(Money.valueOf("600"), recipient.closingBalance());
+        Assertions.assertEquals(Money.valueOf("100"), recipient.transferInTotal());
+        Assertions.assertEquals(1, recipient.transferInCount());
+
+        // a period before any activity is derived back from the current balance
+        BalanceSummaryDto before = balanceRollupService.getSummary(accountId, today.minusDays(7), today.minusDays(1));
+        Assertions.assertEquals(Money.valueOf("1000"), before.openingBalance());
+        Assertions.assertEquals(Money.valueOf("1000"), before.closingBalance());
+        Assertions.assertEquals(0, before.depositCount());
+
+        assertThrows(IllegalArgumentException.class, () -> balanceRollupService.getSummary(accountId, today, today.minusDays(1)));
+    }
+
+    @Test
+    void testStripedAccount() {
+        balanceProperties.getStriping().setEnabled(true);
+
+        balanceService.setStripes(accountId, 4);
+        Assertions.assertEquals(Money.ZERO, accountRepository.findById(accountId).orElseThrow().getBalance());
+        Assertions.assertEquals(List.of(Money.valueOf("250"), Money.valueOf("250"), Money.valueOf("250"), Money.valueOf("250")),
+                stripeBalances(accountId));
+
+        // credits and debits that one stripe can take leave the account row alone
+        balanceService.deposit(accountId, Money.valueOf("100"));
+        balanceService.withdraw(accountId, Money.valueOf("200"));
+        Assertions.assertEquals(Money.ZERO, accountRepository.findById(accountId).orElseThrow().getBalance());
+        Assertions.assertEquals(Money.valueOf("900"), balanceService.getAccount(accountId).getBalance());
+
+        // no single stripe holds 600, so the stripes are collapsed into the row and spread back
+        balanceService.transfer(accountId, toAccountId, Money.valueOf("600"));
+        Assertions.assertEquals(Money.valueOf("300"), balanceService.getAccount(accountId).getBalance());
+        Assertions.assertEquals(List.of(Money.valueOf("75"), Money.valueOf("75"), Money.valueOf("75"), Money.valueOf("75")),
+                stripeBalances(accountId));
+        Assertions.assertEquals(Money.valueOf("1100"), balanceService.getAccount(toAccountId).getBalance());
+        assertThrows(InsufficientFundsException.class, () -> balanceService.withdraw(accountId, Money.valueOf("300.01")));
+
+        balanceService.setStripes(accountId, 3);
+        Assertions.assertEquals(List.of(Money.valueOf("100"), Money.valueOf("100"), Money.valueOf("100")), stripeBalances(accountId));
+
+        balanceService.setStripes(accountId, 0);
+        Account collapsed = accountRepository.findById(accountId).orElseThrow();
+        Assertions.assertEquals(0, collapsed.getStripes());
+        Assertions.assertEquals(Money.valueOf("300"), collapsed.getBalance());
+        Assertions.assertTrue(stripeBalances(accountId).isEmpty());
+        // restriping moved money between rows but never posted anything
+        Assertions.assertEquals(Money.valueOf("-700"), postingRepository.findAll().stream()
+                .filter(posting -> accountId.equals(posting.getAccountId()))
+                .map(Posting::getAmount)
+                .reduce(Money.ZERO, Money::plus));
+    }
+
+    private List<Money> stripeBalances(Long accountId) {
+        return accountStripeRepository.findAll().stream()
+                .filter(stripe -> accountId.equals(stripe.getAccountId()))
+                .sorted(Comparator.comparingInt(AccountStripe::getStripe))
+                .map(AccountStripe::getBalance)
+                .toList();
+    }
+}
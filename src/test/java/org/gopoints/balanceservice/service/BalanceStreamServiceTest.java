@@ -0,0 +1,139 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.exceptions.AdmissionRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BalanceStreamServiceTest {
+
+    private static final Long ACCOUNT_ID = 1L;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private BalanceService balanceService;
+
+    private BalanceProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceStreamService balanceStreamService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BalanceProperties();
+        properties.getStream().setMaxSubscribers(2);
+        meterRegistry = new SimpleMeterRegistry();
+        balanceStreamService = new BalanceStreamService(balanceService, properties, new BalanceMetrics(meterRegistry));
+    }
+
+    private static Account account(String balance, long version) {
+        return Account.builder().id(ACCOUNT_ID).userId(7).balance(Money.valueOf(balance)).version(version).build();
+    }
+
+    private static BalanceChangedEvent changed(String balance, long version) {
+        return new BalanceChangedEvent(ACCOUNT_ID, 7, Money.valueOf(balance), version);
+    }
+
+    @Test
+    void startsWithCurrentBalanceAndFollowsCommittedChanges() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("100.00", 3), account("95.00", 6));
+
+        StepVerifier.create(balanceStreamService.balances(ACCOUNT_ID))
+                .assertNext(event -> assertEquals(Money.valueOf("100.00"), event.balance()))
+                .then(() -> balanceStreamService.onBalanceChanged(changed("110.00", 4)))
+                .assertNext(event -> assertEquals(4, event.version()))
+                // older than what the subscriber already has
+                .then(() -> balanceStreamService.onBalanceChanged(changed("90.00", 2)))
+                // balance not known to the writer: read back once
+                .then(() -> balanceStreamService.onBalanceChanged(BalanceChangedEvent.unknown(ACCOUNT_ID)))
+                .assertNext(event -> assertEquals(Money.valueOf("95.00"), event.balance()))
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        assertEquals(0, balanceStreamService.subscribers());
+    }
+
+    @Test
+    void slowSubscriberSkipsToLatestBalance() {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("100.00", 1));
+
+        StepVerifier.create(balanceStreamService.balances(ACCOUNT_ID), 1)
+                .assertNext(event -> assertEquals(1, event.version()))
+                .then(() -> {
+                    for (int version = 2; version <= 50; version++) {
+                        balanceStreamService.onBalanceChanged(changed("1.00", version));
+                    }
+                })
+                .thenRequest(1)
+                .assertNext(event -> assertEquals(50, event.version()))
+                .thenCancel()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void concurrentCommitsOfOneAccountAreAllHandedToTheStream() throws Exception {
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("100.00", 0));
+        AtomicLong latest = new AtomicLong();
+        Disposable subscription = balanceStreamService.balances(ACCOUNT_ID)
+                .subscribe(event -> latest.accumulateAndGet(event.version(), Math::max));
+        verify(balanceService, timeout(TIMEOUT.toMillis())).getAccount(ACCOUNT_ID);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> commits = new ArrayList<>();
+            for (int version = 1; version <= 2000; version++) {
+                BalanceChangedEvent event = changed("1.00", version);
+                commits.add(executor.submit(() -> balanceStreamService.onBalanceChanged(event)));
+            }
+            for (Future<?> commit : commits) {
+                commit.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            subscription.dispose();
+        }
+
+        assertEquals(2000, latest.get());
+        assertTrue(meterRegistry.find("balance.stream.dropped").counters().isEmpty());
+    }
+
+    @Test
+    void rejectsSubscribersBeyondLimit() {
+        properties.getStream().setMaxSubscribers(1);
+        when(balanceService.getAccount(ACCOUNT_ID)).thenReturn(account("100.00", 1));
+
+        Disposable first = balanceStreamService.balances(ACCOUNT_ID).subscribe();
+        verify(balanceService, timeout(TIMEOUT.toMillis())).getAccount(ACCOUNT_ID);
+        StepVerifier.create(balanceStreamService.balances(2L))
+                .expectError(AdmissionRejectedException.class)
+                .verify(TIMEOUT);
+        assertEquals(1, balanceStreamService.subscribers());
+
+        first.dispose();
+        assertEquals(0, balanceStreamService.subscribers());
+    }
+}
@@ -0,0 +1,145 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.model.Account;
+import org.gopoints.balanceservice.model.BalanceChangedEvent;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.Transaction;
+import org.gopoints.balanceservice.model.exceptions.AccountNotFoundException;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.gopoints.balanceservice.repository.AccountRepository;
+import org.gopoints.balanceservice.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchLedgerServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BalanceEventPublisher balanceEventPublisher;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Mock
+    private BalanceRollupService balanceRollupService;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private PostingService postingService;
+
+    private BatchLedgerService batchLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        batchLedgerService = new BatchLedgerService(accountRepository, transactionRepository, balanceEventPublisher,
+                new BalanceMetrics(new SimpleMeterRegistry()), applicationEventPublisher, balanceRollupService,
+                stripedBalanceService, postingService);
+    }
+
+    private static Account account(Long id, Money balance) {
+        return Account.builder().id(id).userId(id.intValue()).balance(balance).build();
+    }
+
+    @Test
+    void overflowingOperationOnlyFailsItself() {
+        Money nearMax = Money.ofCents(Long.MAX_VALUE - 100);
+        Account full = account(1L, nearMax);
+        Account sender = account(2L, Money.valueOf("50"));
+        when(accountRepository.findAllByIdWithLock(anyCollection())).thenReturn(List.of(full, sender));
+
+        List<LedgerOperationResult> results = batchLedgerService.apply(List.of(
+                LedgerOperation.deposit(1L, Money.valueOf("10")),
+                LedgerOperation.transfer(2L, 1L, Money.valueOf("20")),
+                LedgerOperation.withdraw(2L, Money.valueOf("5"))));
+
+        assertInstanceOf(ArithmeticException.class, results.get(0).error());
+        assertInstanceOf(ArithmeticException.class, results.get(1).error());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(nearMax, full.getBalance());
+        // the failed transfer left the sender untouched
+        assertEquals(Money.valueOf("45"), sender.getBalance());
+    }
+
+    @Test
+    void eachOperationGetsItsOwnOutcome() {
+        Account first = account(1L, Money.valueOf("100"));
+        Account second = account(2L, Money.valueOf("50"));
+        when(accountRepository.findAllByIdWithLock(anyCollection())).thenReturn(List.of(first, second));
+
+        List<LedgerOperationResult> results = batchLedgerService.apply(List.of(
+                LedgerOperation.deposit(1L, Money.valueOf("10")),
+                LedgerOperation.withdraw(2L, Money.valueOf("80")),
+                LedgerOperation.deposit(9L, Money.valueOf("10")),
+                LedgerOperation.transfer(1L, 9L, Money.valueOf("10")),
+                LedgerOperation.transfer(1L, 2L, Money.valueOf("30")),
+                LedgerOperation.withdraw(2L, Money.valueOf("80")),
+                LedgerOperation.deposit(1L, Money.valueOf("-1"))));
+
+        assertEquals(Money.valueOf("110"), results.get(0).balance());
+        assertInstanceOf(InsufficientFundsException.class, results.get(1).error());
+        assertInstanceOf(AccountNotFoundException.class, results.get(2).error());
+        assertInstanceOf(AccountNotFoundException.class, results.get(3).error());
+        assertEquals(Money.valueOf("80"), results.get(4).balance());
+        // sees the transfer applied before it in the same batch
+        assertEquals(Money.ZERO, results.get(5).balance());
+        assertInstanceOf(IllegalArgumentException.class, results.get(6).error());
+        assertEquals(Money.valueOf("80"), first.getBalance());
+        assertEquals(Money.ZERO, second.getBalance());
+
+        ArgumentCaptor<List<Transaction>> ledger = ArgumentCaptor.captor();
+        verify(transactionRepository).batchInsert(ledger.capture());
+        assertEquals(List.of("DEPOSIT", "TRANSFER", "WITHDRAW"),
+                ledger.getValue().stream().map(Transaction::getOperationType).toList());
+        verify(balanceEventPublisher, times(3)).publish(any());
+        verify(applicationEventPublisher, times(2)).publishEvent(any(BalanceChangedEvent.class));
+    }
+
+    @Test
+    void transferToSameAccountIsRejected() {
+        Account account = account(1L, Money.valueOf("100"));
+        when(accountRepository.findAllByIdWithLock(anyCollection())).thenReturn(List.of(account));
+
+        List<LedgerOperationResult> results = batchLedgerService.apply(List.of(
+                LedgerOperation.transfer(1L, 1L, Money.valueOf("30"))));
+
+        assertInstanceOf(IllegalArgumentException.class, results.get(0).error());
+        assertEquals(Money.valueOf("100"), account.getBalance());
+        verify(balanceEventPublisher, never()).publish(any());
+    }
+
+    @Test
+    void emptyBatchLocksNothing() {
+        assertTrue(batchLedgerService.apply(List.of()).isEmpty());
+
+        verify(accountRepository, never()).findAllByIdWithLock(anyCollection());
+        verify(balanceEventPublisher, never()).publish(any());
+    }
+}
@@ -0,0 +1,124 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchOperationServiceTest {
+
+    @Mock
+    private BatchLedgerService batchLedgerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceProperties properties;
+
+    private BatchOperationService batchOperationService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        properties = new BalanceProperties();
+        properties.getBatch().setMaxOperations(10);
+        properties.getBatch().setChunkSize(3);
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(2));
+        TransactionRetrier transactionRetrier = new TransactionRetrier(transactionManager,
+                new BalanceMetrics(new SimpleMeterRegistry()), properties);
+        batchOperationService = new BatchOperationService(batchLedgerService, transactionRetrier, properties);
+    }
+
+    @Test
+    void rejectsEmptyBatch() {
+        assertThrows(IllegalArgumentException.class, () -> batchOperationService.execute(List.of()));
+
+        verifyNoInteractions(batchLedgerService);
+    }
+
+    @Test
+    void rejectsBatchOverMaxOperations() {
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        assertEquals(10, batchOperationService.execute(deposits(10)).size());
+        assertThrows(IllegalArgumentException.class, () -> batchOperationService.execute(deposits(11)));
+
+        verify(batchLedgerService, times(4)).apply(anyList());
+    }
+
+    @Test
+    void appliesChunksInOrderEachInItsOwnTransaction() {
+        List<LedgerOperation> operations = deposits(7);
+        List<List<LedgerOperation>> chunks = new ArrayList<>();
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> {
+            List<LedgerOperation> chunk = List.copyOf(invocation.getArgument(0));
+            chunks.add(chunk);
+            return succeeded(chunk);
+        });
+
+        List<LedgerOperationResult> results = batchOperationService.execute(operations);
+
+        assertEquals(List.of(operations.subList(0, 3), operations.subList(3, 6), operations.subList(6, 7)), chunks);
+        assertEquals(operations, results.stream().map(LedgerOperationResult::operation).toList());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void retriesOnlyTheChunkThatDeadlocked() {
+        List<LedgerOperation> operations = deposits(6);
+        List<List<LedgerOperation>> chunks = new ArrayList<>();
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> {
+            List<LedgerOperation> chunk = List.copyOf(invocation.getArgument(0));
+            chunks.add(chunk);
+            if (chunks.size() == 2) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return succeeded(chunk);
+        });
+
+        List<LedgerOperationResult> results = batchOperationService.execute(operations);
+
+        assertEquals(List.of(operations.subList(0, 3), operations.subList(3, 6), operations.subList(3, 6)), chunks);
+        assertEquals(operations, results.stream().map(LedgerOperationResult::operation).toList());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    private static List<LedgerOperation> deposits(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(accountId -> LedgerOperation.deposit(accountId, Money.valueOf("10")))
+                .toList();
+    }
+
+    private static List<LedgerOperationResult> succeeded(List<LedgerOperation> chunk) {
+        return chunk.stream()
+                .map(operation -> LedgerOperationResult.success(operation, operation.amount()))
+                .toList();
+    }
+}
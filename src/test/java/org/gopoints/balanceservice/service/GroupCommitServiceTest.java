@@ -0,0 +1,170 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.LedgerOperation;
+import org.gopoints.balanceservice.model.LedgerOperationResult;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.exceptions.InsufficientFundsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GroupCommitServiceTest {
+
+    private static final LedgerOperation DEPOSIT = LedgerOperation.deposit(1L, Money.valueOf("10"));
+    private static final LedgerOperation WITHDRAW = LedgerOperation.withdraw(2L, Money.valueOf("500"));
+    private static final LedgerOperation OTHER_DEPOSIT = LedgerOperation.deposit(3L, Money.valueOf("1"));
+
+    @Mock
+    private BatchLedgerService batchLedgerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceProperties properties;
+    private GroupCommitService groupCommitService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        properties = new BalanceProperties();
+        properties.getGroupCommit().setEnabled(true);
+        properties.getGroupCommit().setWindow(Duration.ofMillis(200));
+        properties.getGroupCommit().setMaxBatchSize(3);
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(2));
+
+        BalanceMetrics balanceMetrics = new BalanceMetrics(new SimpleMeterRegistry());
+        groupCommitService = new GroupCommitService(batchLedgerService,
+                new TransactionRetrier(transactionManager, balanceMetrics, properties), balanceMetrics, properties);
+        groupCommitService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        groupCommitService.stop();
+    }
+
+    private static List<LedgerOperationResult> results(List<LedgerOperation> operations) {
+        return operations.stream()
+                .map(operation -> operation.equals(WITHDRAW)
+                        ? LedgerOperationResult.failure(operation, new InsufficientFundsException("Not enough balance"))
+                        : LedgerOperationResult.success(operation, operation.amount()))
+                .toList();
+    }
+
+    @Test
+    void appliesQueuedOperationsInOneBatchWithResultPerCaller() throws Exception {
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+        CompletableFuture<LedgerOperationResult> deposit = groupCommitService.submit(DEPOSIT);
+        CompletableFuture<LedgerOperationResult> withdraw = groupCommitService.submit(WITHDRAW);
+        CompletableFuture<LedgerOperationResult> otherDeposit = groupCommitService.submit(OTHER_DEPOSIT);
+
+        assertEquals(Money.valueOf("10"), deposit.get(2, TimeUnit.SECONDS).balance());
+        assertEquals(Money.valueOf("1"), otherDeposit.get(2, TimeUnit.SECONDS).balance());
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> withdraw.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(InsufficientFundsException.class, failed.getCause());
+        verify(batchLedgerService).apply(List.of(DEPOSIT, WITHDRAW, OTHER_DEPOSIT));
+    }
+
+    @Test
+    void failingWithdrawalOnlyFailsItsOwnCaller() {
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+        CompletableFuture<LedgerOperationResult> withdraw = groupCommitService.submit(WITHDRAW);
+        groupCommitService.deposit(DEPOSIT.accountId(), DEPOSIT.amount());
+
+        assertThrows(InsufficientFundsException.class, () -> groupCommitService.withdraw(WITHDRAW.accountId(), WITHDRAW.amount()));
+        assertInstanceOf(InsufficientFundsException.class,
+                assertThrows(ExecutionException.class, () -> withdraw.get(2, TimeUnit.SECONDS)).getCause());
+    }
+
+    @Test
+    void retriesBatchAbortedByDeadlock() throws Exception {
+        when(batchLedgerService.apply(anyList()))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+        CompletableFuture<LedgerOperationResult> deposit = groupCommitService.submit(DEPOSIT);
+        CompletableFuture<LedgerOperationResult> otherDeposit = groupCommitService.submit(OTHER_DEPOSIT);
+
+        assertEquals(Money.valueOf("10"), deposit.get(2, TimeUnit.SECONDS).balance());
+        assertEquals(Money.valueOf("1"), otherDeposit.get(2, TimeUnit.SECONDS).balance());
+        verify(batchLedgerService, times(2)).apply(List.of(DEPOSIT, OTHER_DEPOSIT));
+    }
+
+    @Test
+    void timedOutOperationIsNeverApplied() throws Exception {
+        // shorter than the window, so the flusher still holds the deposit when its caller gives up
+        properties.getGroupCommit().setAwaitTimeout(Duration.ofMillis(100));
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+        assertThrows(IllegalStateException.class, () -> groupCommitService.deposit(DEPOSIT.accountId(), DEPOSIT.amount()));
+        CompletableFuture<LedgerOperationResult> otherDeposit = groupCommitService.submit(OTHER_DEPOSIT);
+
+        assertEquals(Money.valueOf("1"), otherDeposit.get(2, TimeUnit.SECONDS).balance());
+        verify(batchLedgerService).apply(List.of(OTHER_DEPOSIT));
+        verifyNoMoreInteractions(batchLedgerService);
+    }
+
+    @Test
+    void callerWaitsPastTimeoutForBatchAlreadyBeingCommitted() {
+        properties.getGroupCommit().setAwaitTimeout(Duration.ofMillis(100));
+        properties.getGroupCommit().setMaxBatchSize(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchLedgerService.apply(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return results(invocation.getArgument(0));
+        });
+        CompletableFuture.runAsync(() -> {
+            try {
+                started.await();
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+
+        groupCommitService.deposit(DEPOSIT.accountId(), DEPOSIT.amount());
+
+        verify(batchLedgerService).apply(List.of(DEPOSIT));
+    }
+
+    @Test
+    void rejectsOperationsAfterStop() throws InterruptedException {
+        groupCommitService.stop();
+
+        assertThrows(IllegalStateException.class, () -> groupCommitService.submit(DEPOSIT));
+    }
+}
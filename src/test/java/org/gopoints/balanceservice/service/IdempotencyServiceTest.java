@@ -0,0 +1,216 @@
+package org.gopoints.balanceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.gopoints.balanceservice.model.IdempotencyKey;
+import org.gopoints.balanceservice.model.exceptions.IdempotencyKeyReusedException;
+import org.gopoints.balanceservice.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceTest {
+
+    private static final String KEY = "8f14e45f-ceea-467e-a5b4-1c2d3e4f5a6b";
+    private static final String FINGERPRINT = IdempotencyService.fingerprint("deposit", 1L, "50.00");
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private Cache<String, String> cache;
+
+    private BalanceProperties properties;
+
+    private IdempotencyService idempotencyService;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        meterRegistry = new SimpleMeterRegistry();
+        BalanceMetrics balanceMetrics = new BalanceMetrics(meterRegistry);
+        properties = new BalanceProperties();
+        properties.getIdempotency().setSweepBatchSize(2);
+        cache = Caffeine.newBuilder().build();
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, cache,
+                new TransactionRetrier(transactionManager, balanceMetrics, properties),
+                balanceMetrics, properties, transactionManager);
+    }
+
+    @Test
+    void firstRequestRunsAndRetryIsReplayedFromMemory() {
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+
+        assertFalse(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+        assertTrue(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository).insert(eq(KEY), eq(FINGERPRINT), any(), any());
+        verify(idempotencyKeyRepository, times(1)).findById(KEY);
+        assertEquals(1.0, replays("memory"));
+    }
+
+    @Test
+    void committedKeyIsReplayedFromDatabase() {
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(stored(FINGERPRINT, LocalDateTime.now().plusHours(1))));
+
+        assertTrue(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(0, executions.get());
+        assertEquals(FINGERPRINT, cache.getIfPresent(KEY));
+        assertEquals(1.0, replays("database"));
+        verify(idempotencyKeyRepository, times(0)).insert(any(), any(), any(), any());
+    }
+
+    @Test
+    void keyUsedForDifferentRequestIsRejected() {
+        String other = IdempotencyService.fingerprint("deposit", 1L, "60.00");
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(stored(other, LocalDateTime.now().plusHours(1))));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+        // now answered from memory
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(0, executions.get());
+        verify(idempotencyKeyRepository, times(1)).findById(KEY);
+    }
+
+    @Test
+    void expiredKeyIsDeletedAndUsedAgain() {
+        String other = IdempotencyService.fingerprint("withdraw", 1L, "10.00");
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(stored(other, LocalDateTime.now().minusMinutes(1))));
+
+        assertFalse(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(1, executions.get());
+        InOrder inOrder = inOrder(idempotencyKeyRepository);
+        inOrder.verify(idempotencyKeyRepository).deleteIfExpired(eq(KEY), any());
+        inOrder.verify(idempotencyKeyRepository).insert(eq(KEY), eq(FINGERPRINT), any(), any());
+        assertEquals(FINGERPRINT, cache.getIfPresent(KEY));
+    }
+
+    @Test
+    void concurrentRequestWithSameKeyIsReplayed() {
+        when(idempotencyKeyRepository.findById(KEY))
+                .thenReturn(Optional.empty(), Optional.of(stored(FINGERPRINT, LocalDateTime.now().plusHours(1))));
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(idempotencyKeyRepository).insert(eq(KEY), eq(FINGERPRINT), any(), any());
+
+        assertTrue(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(0, executions.get());
+        assertEquals(FINGERPRINT, cache.getIfPresent(KEY));
+        assertEquals(1.0, replays("database"));
+    }
+
+    @Test
+    void concurrentRequestWithSameKeyForDifferentRequestIsRejected() {
+        String other = IdempotencyService.fingerprint("deposit", 1L, "60.00");
+        when(idempotencyKeyRepository.findById(KEY))
+                .thenReturn(Optional.empty(), Optional.of(stored(other, LocalDateTime.now().plusHours(1))));
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(idempotencyKeyRepository).insert(eq(KEY), eq(FINGERPRINT), any(), any());
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+    }
+
+    @Test
+    void integrityViolationWithoutStoredKeyIsRethrown() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("foreign key");
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+        doThrow(violation).when(idempotencyKeyRepository).insert(eq(KEY), eq(FINGERPRINT), any(), any());
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet)));
+        assertNull(cache.getIfPresent(KEY));
+    }
+
+    @Test
+    void failedRequestIsNotRemembered() {
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.execute(KEY, "deposit", FINGERPRINT, () -> {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }));
+        assertFalse(idempotencyService.execute(KEY, "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void rejectsBlankAndOverlongKeys() {
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute(" ", "deposit", FINGERPRINT, executions::incrementAndGet));
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.execute(
+                "k".repeat(IdempotencyService.MAX_KEY_LENGTH + 1), "deposit", FINGERPRINT, executions::incrementAndGet));
+
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    void sweepDeletesInBatchesUntilOneComesBackShort() {
+        when(idempotencyKeyRepository.deleteExpired(any(), anyInt())).thenReturn(2, 2, 1);
+
+        idempotencyService.sweep();
+
+        verify(idempotencyKeyRepository, times(3)).deleteExpired(any(), eq(2));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void sweepStopsWhenNothingExpired() {
+        when(idempotencyKeyRepository.deleteExpired(any(), anyInt())).thenReturn(0);
+
+        idempotencyService.sweep();
+
+        verify(idempotencyKeyRepository, times(1)).deleteExpired(any(), eq(2));
+    }
+
+    private static IdempotencyKey stored(String fingerprint, LocalDateTime expiresAt) {
+        return new IdempotencyKey(KEY, fingerprint, expiresAt.minusHours(24), expiresAt);
+    }
+
+    private double replays(String source) {
+        return meterRegistry.get("balance.idempotency.replays").tag("source", source).counter().count();
+    }
+}
@@ -0,0 +1,197 @@
+package org.gopoints.balanceservice.service;
+
+import org.gopoints.balanceservice.BalanceServiceApplication;
+import org.gopoints.balanceservice.model.Money;
+import org.gopoints.balanceservice.model.OutboxEvent;
+import org.gopoints.balanceservice.model.RabbitMessage;
+import org.gopoints.balanceservice.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.AmqpNackReceivedException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Testcontainers
+@SpringBootTest(classes = BalanceServiceApplication.class)
+@ExtendWith(MockitoExtension.class)
+public class OutboxRelayTest {
+
+    @MockitoBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations channel;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.2")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        postgres.start();
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // the test drives the relay itself
+        registry.add("balance.outbox.poll-interval", () -> "1h");
+    }
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // invoke() runs the callback on a dedicated channel, mocked here
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(channel));
+    }
+
+    @Test
+    void enqueueRequiresCallerTransaction() {
+        RabbitMessage message = new RabbitMessage(1L, Money.valueOf("100"), "deposit", null);
+
+        assertThrows(IllegalTransactionStateException.class, () -> outboxService.enqueue(message));
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.enqueue(message);
+            status.setRollbackOnly();
+        });
+        Assertions.assertEquals(0, outboxEventRepository.count());
+
+        transactionTemplate.executeWithoutResult(status -> outboxService.enqueue(message));
+
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals(message, outboxService.deserialize(events.get(0)));
+    }
+
+    @Test
+    void relayDeletesEventsOnlyAfterBrokerConfirmsThem() {
+        List<RabbitMessage> messages = enqueue(3);
+        doAnswer(invocation -> {
+            // confirms are awaited while the rows are still in the outbox
+            Assertions.assertEquals(3, outboxEventRepository.count());
+            return null;
+        }).when(channel).waitForConfirmsOrDie(anyLong());
+
+        outboxRelay.relay();
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        InOrder inOrder = inOrder(channel);
+        inOrder.verify(channel, times(3)).convertAndSend(eq(OutboxService.ROUTING_KEY), sent.capture());
+        inOrder.verify(channel).waitForConfirmsOrDie(anyLong());
+        Assertions.assertEquals(messages, sent.getAllValues());
+        Assertions.assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void relayKeepsEventsWhenConfirmsFail() {
+        enqueue(2);
+        doThrow(new AmqpNackReceivedException("nacked", new Message(new byte[0])))
+                .when(channel).waitForConfirmsOrDie(anyLong());
+
+        outboxRelay.relay();
+
+        Assertions.assertEquals(2, outboxEventRepository.count());
+
+        doNothing().when(channel).waitForConfirmsOrDie(anyLong());
+        outboxRelay.relay();
+
+        Assertions.assertEquals(0, outboxEventRepository.count());
+        verify(channel, times(4)).convertAndSend(eq(OutboxService.ROUTING_KEY), any(Object.class));
+    }
+
+    @Test
+    void relaySkipsEventsLockedByAnotherRelay() throws Exception {
+        List<RabbitMessage> messages = enqueue(3);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> otherRelay = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            outboxEventRepository.findPendingForRelay(Limit.of(2));
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+            outboxRelay.relay();
+
+            verify(channel).convertAndSend(OutboxService.ROUTING_KEY, messages.get(2));
+            verify(channel, never()).convertAndSend(OutboxService.ROUTING_KEY, messages.get(0));
+            Assertions.assertEquals(2, outboxEventRepository.count());
+        } finally {
+            release.countDown();
+            otherRelay.get(10, TimeUnit.SECONDS);
+        }
+
+        outboxRelay.relay();
+
+        verify(channel).convertAndSend(OutboxService.ROUTING_KEY, messages.get(0));
+        verify(channel).convertAndSend(OutboxService.ROUTING_KEY, messages.get(1));
+        Assertions.assertEquals(0, outboxEventRepository.count());
+    }
+
+    private List<RabbitMessage> enqueue(int count) {
+        List<RabbitMessage> messages = new ArrayList<>();
+        for (long accountId = 1; accountId <= count; accountId++) {
+            RabbitMessage message = new RabbitMessage(accountId, Money.valueOf("10"), "deposit", null);
+            transactionTemplate.executeWithoutResult(status -> outboxService.enqueue(message));
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -1,5 +1,6 @@
 package org.gopoints.balanceservice.service;
 
+import org.gopoints.balanceservice.model.Money;
 import org.gopoints.balanceservice.model.RabbitMessage;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,8 +12,6 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 
-import java.math.BigDecimal;
-
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
@@ -32,7 +31,7 @@ public class RabbitMQServiceTest {
 
     @Test
     void sendDepositMessageToQueue() {
-        RabbitMessage depositMessage = new RabbitMessage(1L, BigDecimal.valueOf(100), "deposit", null);
+        RabbitMessage depositMessage = new RabbitMessage(1L, Money.valueOf("100"), "deposit", null);
 
         rabbitMQService.sendMessage(depositMessage);
 
@@ -43,7 +42,7 @@ public class RabbitMQServiceTest {
 
     @Test
     void sendWithdrawMessageToQueue() {
-        RabbitMessage withdrawMessage = new RabbitMessage(1L, BigDecimal.valueOf(50), "withdraw", null);
+        RabbitMessage withdrawMessage = new RabbitMessage(1L, Money.valueOf("50"), "withdraw", null);
 
         rabbitMQService.sendMessage(withdrawMessage);
 
@@ -54,7 +53,7 @@ public class RabbitMQServiceTest {
 
     @Test
     void sendTransaction_shouldLogMessageBeforeSending() {
-        RabbitMessage message = new RabbitMessage(1L, BigDecimal.valueOf(100), "deposit", null);
+        RabbitMessage message = new RabbitMessage(1L, Money.valueOf("100"), "deposit", null);
 
         rabbitMQService.sendMessage(message);
 
@@ -63,7 +62,7 @@ public class RabbitMQServiceTest {
 
     @Test
     void sendTransaction_shouldHandleExceptionWhenSendingFails() {
-        RabbitMessage message = new RabbitMessage(1L, BigDecimal.valueOf(100), "deposit", null);
+        RabbitMessage message = new RabbitMessage(1L, Money.valueOf("100"), "deposit", null);
 
         doThrow(new RuntimeException("Sending failed"))
                 .when(rabbitTemplate)
@@ -76,7 +75,7 @@ public class RabbitMQServiceTest {
 
     @Test
     void testMessageConversion() {
-        RabbitMessage message = new RabbitMessage(2L, BigDecimal.valueOf(500), "deposit", null);
+        RabbitMessage message = new RabbitMessage(2L, Money.valueOf("500"), "deposit", null);
         MessageConverter converter = new Jackson2JsonMessageConverter();
         Message amqpMessage = converter.toMessage(message, new MessageProperties());
         RabbitMessage result = (RabbitMessage) converter.fromMessage(amqpMessage);
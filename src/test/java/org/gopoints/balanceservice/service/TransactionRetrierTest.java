@@ -0,0 +1,85 @@
+package org.gopoints.balanceservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gopoints.balanceservice.config.BalanceProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionRetrierTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TransactionRetrier transactionRetrier;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        BalanceProperties properties = new BalanceProperties();
+        properties.getRetry().setMaxAttempts(3);
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(2));
+
+        meterRegistry = new SimpleMeterRegistry();
+        transactionRetrier = new TransactionRetrier(transactionManager, new BalanceMetrics(meterRegistry), properties);
+    }
+
+    @Test
+    void retriesDeadlockUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = transactionRetrier.execute("transfer", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("balance.tx.retries").tag("operation", "transfer").counter().count());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(CannotAcquireLockException.class, () -> transactionRetrier.execute("transfer", () -> {
+            calls.incrementAndGet();
+            throw new CannotAcquireLockException("deadlock detected");
+        }));
+
+        assertEquals(3, calls.get());
+        assertEquals(1.0, meterRegistry.get("balance.tx.retries.exhausted").counter().count());
+    }
+
+    @Test
+    void doesNotRetryBusinessErrors() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalArgumentException.class, () -> transactionRetrier.execute("transfer", () -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("bad amount");
+        }));
+
+        assertEquals(1, calls.get());
+    }
+}